@@ -0,0 +1,130 @@
+package com.divirad.util.sql;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Snapshots of the column values of entities as they were loaded, used by {@link OpenDao#update} and 
+ * {@link Dao#update} to write only the changed columns. Entities are held by weak references compared by 
+ * identity, so tracked entities can be garbage collected as usual and equal entities are tracked separately
+ *
+ * @param <T> Class of the tracked entities
+ */
+final class ChangeTracker<T> {
+	
+	/**
+	 * Weak reference with the identity of its referent, so it can be used as key of the snapshots
+	 */
+	private static final class IdentityKey extends WeakReference<Object> {
+		private final int hash;
+		
+		private IdentityKey(Object referent, ReferenceQueue<Object> queue) {
+			super(referent, queue);
+			this.hash = System.identityHashCode(referent);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if(o == this) return true;
+			if(!(o instanceof IdentityKey)) return false;
+			Object referent = get();
+			return referent != null && referent == ((IdentityKey) o).get();
+		}
+	}
+	
+	private final FieldAccessor<T>[] accessors;
+	private final Map<IdentityKey, Object[]> snapshots = new ConcurrentHashMap<>();
+	private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+	
+	/**
+	 * @param accessors accessors of the tracked columns
+	 */
+	ChangeTracker(FieldAccessor<T>[] accessors) {
+		this.accessors = accessors;
+	}
+	
+	/**
+	 * Stores the current values of an entity as the values in the database
+	 */
+	void snapshot(T data) {
+		expunge();
+		Object[] values = new Object[accessors.length];
+		for(int i = 0; i < values.length; i++)
+			values[i] = snapshotValue(i, data);
+		snapshots.put(new IdentityKey(data, collected), values);
+	}
+	
+	/**
+	 * Returns the indices of the accessors whose values differ from the snapshot, 
+	 * <code>null</code> if the entity isn't tracked
+	 */
+	BitSet getChanges(T data) {
+		expunge();
+		Object[] values = snapshots.get(new IdentityKey(data, null));
+		if(values == null) return null;
+		BitSet changed = new BitSet(accessors.length);
+		for(int i = 0; i < values.length; i++) {
+			Object value = accessors[i].get(data);
+			if(accessors[i].isStream() ? value != null : !Objects.deepEquals(values[i], value))
+				changed.set(i);
+		}
+		return changed;
+	}
+	
+	/**
+	 * Stores the current value of one column of a tracked entity as the value in the database, 
+	 * e.g. after a lazy field was loaded
+	 * 
+	 * @param index index of the accessor
+	 */
+	void snapshot(T data, int index) {
+		Object[] values = snapshots.get(new IdentityKey(data, null));
+		if(values != null)
+			values[index] = snapshotValue(index, data);
+	}
+	
+	/**
+	 * Stops tracking an entity, e.g. after it was deleted
+	 */
+	void forget(T data) {
+		snapshots.remove(new IdentityKey(data, null));
+	}
+	
+	/**
+	 * Returns the value of an accessor as it is stored in a snapshot. Streams can only be read once, so they aren't 
+	 * stored and a stream that isn't <code>null</code> is always a change
+	 */
+	private Object snapshotValue(int index, T data) {
+		return accessors[index].isStream() ? null : copyValue(accessors[index].get(data));
+	}
+	
+	/**
+	 * Removes the snapshots of garbage collected entities
+	 */
+	private void expunge() {
+		Reference<?> ref;
+		while((ref = collected.poll()) != null)
+			snapshots.remove(ref);
+	}
+	
+	/**
+	 * Copies mutable values, so changes to the entity don't change the snapshot. 
+	 * Also used for the copies of cached rows, see {@link Dao#copy(Object)}
+	 */
+	static Object copyValue(Object value) {
+		if(value instanceof byte[]) return ((byte[]) value).clone();
+		if(value instanceof java.util.Date) return ((java.util.Date) value).clone();
+		if(value instanceof java.util.List) return new java.util.ArrayList<>((java.util.List<?>) value);
+		return value;
+	}
+}
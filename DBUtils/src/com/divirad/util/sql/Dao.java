@@ -1,16 +1,34 @@
 package com.divirad.util.sql;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.Time;
-import java.sql.Timestamp;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Base Dao class.
@@ -31,6 +49,10 @@ public abstract class Dao<T> extends DaoBase<T> {
     protected String field_list;
     protected String param_list;
     protected String primary_list;
+    /**
+     * Columns read by the selects: all value fields except the lazy fields, in the order of the fields
+     */
+    protected String select_list;
     protected String tableName;
 
     protected String sql_insert;
@@ -38,26 +60,132 @@ public abstract class Dao<T> extends DaoBase<T> {
     protected String sql_update;
     protected String sql_replace;
     protected String sql_delete;
+    /**
+     * Columns written by upsert (all value fields except the automatic values) and the key columns identifying 
+     * existing rows, see {@link #upsertSql(int)}
+     */
+    protected String[] upsert_columns;
+    protected String[] primary_columns;
+    /**
+     * Columns of the automatic values, read back after inserts, see {@link #setGeneratedKeys(ResultSet, List, int)}
+     */
+    protected String[] automatic_columns;
 
+    /**
+     * The reflected fields. Only set if the Dao was created from the class, Daos created from precompiled accessors
+     * (e.g. generated Daos) leave them <code>null</code>
+     */
     protected Field[] primaryKeys;
     protected Field[] notAutomatedKeys;
     protected Field[] valueFields;
     protected Field[] allFields;
 
+    protected FieldAccessor<T>[] primaryKeyAccessors;
+    protected FieldAccessor<T>[] notAutomatedAccessors;
+    protected FieldAccessor<T>[] valueAccessors;
+    protected FieldAccessor<T>[] automaticAccessors;
+    /**
+     * Accessors used to read a row in the order of allFields. Join fields load their objects via getJoinObjects
+     */
+    protected FieldAccessor<T>[] rowAccessors;
+
+    /**
+     * Compiled accessors for each of the field arrays above, so setParams can be called with the arrays
+     */
+    private final Map<Field[], FieldAccessor<T>[]> accessorsByFields = new IdentityHashMap<>();
+
+    /**
+     * Loaders of join fields with a foreign key, filled after the rows are mapped
+     */
+    private final List<JoinLoader<T, ?>> joinLoaders = new ArrayList<>();
+
+    /**
+     * Optional cache of select, see {@link #enableCache(int, long)}
+     */
+    private volatile EntityCache<T> cache;
+
+    /**
+     * Optional snapshots of loaded rows, see {@link #enableChangeTracking()}
+     */
+    private volatile ChangeTracker<T> changeTracker;
+    /**
+     * Partial update statements by the indices of the changed valueAccessors
+     */
+    private final Map<BitSet, String> partialUpdates = new ConcurrentHashMap<>();
+    /**
+     * Projections of select and selectAll by the names of the selected fields
+     */
+    private final Map<List<String>, Projection> projections = new ConcurrentHashMap<>();
+
     protected boolean isWholeTable;
     protected boolean isOneToNJoinable;
 
+    /**
+     * Name of the database profile used by this Dao, <code>null</code> for the active profile
+     */
+    protected String profileName;
+
     public Dao(Class<T> cls) {
+        this(cls, null);
+    }
+
+    /**
+     * Creates a Dao bound to a database profile. All operations of the Dao use the pool of that profile, 
+     * independent of the active profile
+     *
+     * @param cls         class of T
+     * @param profileName name of the profile, <code>null</code> for the active profile
+     */
+    public Dao(Class<T> cls, String profileName) {
         super(cls);
+        this.profileName = profileName;
         SqlMarker.TableView annotation = cls.getAnnotation(SqlMarker.TableView.class);
         if (annotation == null)
             throw new IllegalArgumentException("Can't use class: must have annotation MysqlMarker.TableView");
-        this.tableName = Database.getLeadingIdentifierSign() + annotation.tableName() + Database.getTrailingIdentifierSign();
+        this.tableName = Database.getLeadingIdentifierSign(profileName) + annotation.tableName() 
+                + Database.getTrailingIdentifierSign(profileName);
         this.isWholeTable = annotation.isWholeTable();
         this.isOneToNJoinable = annotation.isOneToNJoinable();
         
         analyzeFields();
         makeStrings();
+        registerStatements();
+    }
+
+    /**
+     * Creates a Dao from precompiled accessors without using reflection. Used by the Daos generated by
+     * {@code com.divirad.util.sql.processor.DaoProcessor}
+     *
+     * @param cls              class of T
+     * @param factory          creates new instances of T
+     * @param tableName        name of the table, see {@link SqlMarker.TableView#tableName()}
+     * @param isWholeTable     see {@link SqlMarker.TableView#isWholeTable()}
+     * @param isOneToNJoinable see {@link SqlMarker.TableView#isOneToNJoinable()}
+     * @param fields           accessors of all not ignored fields in declaration order
+     */
+    protected Dao(Class<T> cls, Supplier<T> factory, String tableName, boolean isWholeTable, boolean isOneToNJoinable,
+            FieldAccessor<T>[] fields) {
+        this(cls, factory, null, tableName, isWholeTable, isOneToNJoinable, fields);
+    }
+
+    /**
+     * Creates a Dao bound to a database profile from precompiled accessors without using reflection
+     *
+     * @param profileName name of the profile, <code>null</code> for the active profile
+     * @see #Dao(Class, Supplier, String, boolean, boolean, FieldAccessor[])
+     */
+    protected Dao(Class<T> cls, Supplier<T> factory, String profileName, String tableName, boolean isWholeTable, 
+            boolean isOneToNJoinable, FieldAccessor<T>[] fields) {
+        super(cls, factory);
+        this.profileName = profileName;
+        this.tableName = Database.getLeadingIdentifierSign(profileName) + tableName 
+                + Database.getTrailingIdentifierSign(profileName);
+        this.isWholeTable = isWholeTable;
+        this.isOneToNJoinable = isOneToNJoinable;
+
+        analyzeAccessors(fields);
+        makeStrings();
+        registerStatements();
     }
 
     private void analyzeFields() {
@@ -83,6 +211,54 @@ public abstract class Dao<T> extends DaoBase<T> {
         this.notAutomatedKeys = notAutomatedKeys.toArray(new Field[0]);
         this.valueFields = valueFields.toArray(new Field[0]);
         this.allFields = allFields.toArray(new Field[0]);
+
+        analyzeAccessors(FieldAccessor.of(this.allFields));
+        for (int i = 0; i < this.allFields.length; i++) {
+            Field f = this.allFields[i];
+            if (isOneToNJoinable && List.class.isAssignableFrom(f.getType())) {
+                FieldAccessor<T> accessor = this.rowAccessors[i];
+                SqlMarker.JoinField join = f.getAnnotation(SqlMarker.JoinField.class);
+                if (join != null && !join.foreignKey().isEmpty()) {
+                    joinLoaders.add(new JoinLoader<>(f, accessor, join.foreignKey(), this.primaryKeyAccessors, profileName));
+                    this.rowAccessors[i] = accessor.withExtractor((rs, index, result) -> {});
+                } else {
+                    this.rowAccessors[i] = accessor.withExtractor(
+                            (rs, index, result) -> accessor.set(result, getJoinObjects(f, result, this.primaryKeys)));
+                }
+            }
+        }
+        accessorsByFields.put(this.primaryKeys, this.primaryKeyAccessors);
+        accessorsByFields.put(this.notAutomatedKeys, this.notAutomatedAccessors);
+        accessorsByFields.put(this.valueFields, this.valueAccessors);
+        accessorsByFields.put(this.allFields, this.rowAccessors);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void analyzeAccessors(FieldAccessor<T>[] fields) {
+        List<FieldAccessor<T>> primaryKeys = new ArrayList<>();
+        List<FieldAccessor<T>> notAutomatedKeys = new ArrayList<>();
+        List<FieldAccessor<T>> valueFields = new ArrayList<>();
+        for (FieldAccessor<T> field : fields) {
+            if (field.isJoinField())
+                continue;
+            if (field.isLazy() && (field.getType().isPrimitive() || field.isPrimaryKey()))
+                throw new IllegalArgumentException(
+                        "Can't use lazy field " + field.getName() + ": must not be primitive or primary key");
+            valueFields.add(field);
+            if (field.isPrimaryKey())
+                primaryKeys.add(field);
+            if (!field.isAutomaticValue())
+                notAutomatedKeys.add(field);
+        }
+        this.primaryKeyAccessors = primaryKeys.toArray(new FieldAccessor[0]);
+        this.notAutomatedAccessors = notAutomatedKeys.toArray(new FieldAccessor[0]);
+        this.valueAccessors = valueFields.toArray(new FieldAccessor[0]);
+        List<FieldAccessor<T>> automatic = new ArrayList<>();
+        for (FieldAccessor<T> field : valueFields)
+            if (field.isAutomaticValue())
+                automatic.add(field);
+        this.automaticAccessors = automatic.toArray(new FieldAccessor[0]);
+        this.rowAccessors = fields.clone();
     }
 
     private void makeStrings() {
@@ -90,14 +266,16 @@ public abstract class Dao<T> extends DaoBase<T> {
         StringJoiner param_joiner = new StringJoiner(",", "(", ")");
         StringJoiner primary_joiner = new StringJoiner(" AND ");
         StringJoiner update_joiner = new StringJoiner(",");
-        for (Field field : this.valueFields) {
+        StringJoiner select_joiner = new StringJoiner(",");
+        for (FieldAccessor<T> field : this.valueAccessors) {
             update_joiner.add(field.getName() + "=?");
-            field.setAccessible(true);
+            if (!field.isLazy())
+                select_joiner.add(field.getName());
         }
-        for (Field field : this.primaryKeys) {
+        for (FieldAccessor<T> field : this.primaryKeyAccessors) {
             primary_joiner.add(field.getName() + "=?");
         }
-        for (Field field : this.notAutomatedKeys) {
+        for (FieldAccessor<T> field : this.notAutomatedAccessors) {
             field_joiner.add(field.getName());
             param_joiner.add("?");
         }
@@ -105,15 +283,29 @@ public abstract class Dao<T> extends DaoBase<T> {
         param_list = param_joiner.toString();
         primary_list = primary_joiner.toString();
         field_update_list = update_joiner.toString();
+        select_list = select_joiner.toString();
+        upsert_columns = new String[this.notAutomatedAccessors.length];
+        for (int i = 0; i < upsert_columns.length; i++)
+            upsert_columns[i] = this.notAutomatedAccessors[i].getName();
+        automatic_columns = new String[automaticAccessors.length];
+        for (int i = 0; i < automatic_columns.length; i++)
+            automatic_columns[i] = automaticAccessors[i].getName();
+        primary_columns = new String[this.primaryKeyAccessors.length];
+        for (int i = 0; i < primary_columns.length; i++)
+            primary_columns[i] = this.primaryKeyAccessors[i].getName();
 
         //if (this.isWholeTable)
         sql_insert = "INSERT INTO " + this.tableName + " " + field_list + " VALUES " + param_list;
-        sql_select = "SELECT * FROM " + this.tableName + " WHERE " + primary_list;
+        sql_select = "SELECT " + select_list + " FROM " + this.tableName + " WHERE " + primary_list;
         sql_update = "UPDATE " + this.tableName + " SET " + field_update_list + " WHERE " + primary_list;
         sql_replace = "REPLACE INTO " + this.tableName + " " + field_list + " VALUES " + param_list;
         sql_delete = "DELETE FROM " + this.tableName + " WHERE " + primary_list; 
     }
 
+    private void registerStatements() {
+        Database.registerStatements(profileName, sql_insert, sql_select, sql_update, sql_delete);
+    }
+
     /**
      * Sets the parameter of a PreparedStatement
      *
@@ -124,39 +316,24 @@ public abstract class Dao<T> extends DaoBase<T> {
      * @return next index
      */
     protected int setParams(PreparedStatement ps, T data, Field[] fields, int index) throws SQLException {
-        try {
-            for (int i = 0; i < fields.length; i++, index++) {
-                Field f = fields[i];
-                if (f.get(data) == null)
-                    ps.setObject(index, f.get(data));
-                else if (f.getType() == int.class || f.getType() == Integer.class)
-                    ps.setInt(index, (Integer) f.get(data));
-                else if (f.getType() == boolean.class || f.getType() == Boolean.class)
-                    ps.setBoolean(index, (Boolean) f.get(data));
-                else if (f.getType() == long.class || f.getType() == Long.class)
-                    ps.setLong(index, (Long) f.get(data));
-                else if (f.getType() == byte.class || f.getType() == Byte.class)
-                    ps.setByte(index, (Byte) f.get(data));
-                else if (f.getType() == float.class || f.getType() == Float.class)
-                    ps.setFloat(index, (Float) f.get(data));
-                else if (f.getType() == double.class || f.getType() == Double.class)
-                    ps.setDouble(index, (Double) f.get(data));
-                else if (f.getType() == String.class)
-                    ps.setString(index, (String) f.get(data));
-                else if (f.getType() == byte[].class)
-                    ps.setBytes(index, (byte[]) f.get(data));
-                else if (f.getType() == Date.class)
-                    ps.setDate(index, (Date) f.get(data));
-                else if (f.getType() == Time.class)
-                    ps.setTime(index, (Time) f.get(data));
-                else if (f.getType() == Timestamp.class)
-                    ps.setTimestamp(index, (Timestamp) f.get(data));
-                else
-                    throw new IllegalStateException("Unknown type of field: " + f.getName() + ", " + f.getType().getName());
-            }
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-        }
+        FieldAccessor<T>[] accessors = accessorsByFields.get(fields);
+        if (accessors == null)
+            accessors = FieldAccessor.of(fields);
+        return setParams(ps, data, accessors, index);
+    }
+
+    /**
+     * Sets the parameter of a PreparedStatement
+     *
+     * @param ps        the statement
+     * @param data      contains the data of the parameters
+     * @param accessors accessors of all fields used as parameter
+     * @param index     index of the first parameter
+     * @return next index
+     */
+    protected int setParams(PreparedStatement ps, T data, FieldAccessor<T>[] accessors, int index) throws SQLException {
+        for (FieldAccessor<T> accessor : accessors)
+            index = accessor.bind(ps, data, index);
         return index;
     }
 
@@ -166,7 +343,9 @@ public abstract class Dao<T> extends DaoBase<T> {
     @Override
     protected T convFirstInResultSet(ResultSet rs) throws SQLException {
         if (rs == null || !rs.next()) return null;
-        return convertCurrentFromResultSet(rs);
+        T result = convertCurrentFromResultSet(rs);
+        loadJoinObjects(Collections.singletonList(result));
+        return result;
     }
 
     /**
@@ -174,6 +353,14 @@ public abstract class Dao<T> extends DaoBase<T> {
      */
     @Override
     protected ArrayList<T> convAllInResultSet(ResultSet rs) throws SQLException {
+        return withJoins(mapAll(rs));
+    }
+
+    /**
+     * Converts a ResultSet to a T ArrayList without loading the join fields, so the queries do that after the 
+     * connection of the ResultSet is released, see {@link #withJoins(ArrayList)}
+     */
+    ArrayList<T> mapAll(ResultSet rs) throws SQLException {
         if (rs == null) return null;
         ArrayList<T> result = new ArrayList<>();
         while (rs.next())
@@ -181,45 +368,62 @@ public abstract class Dao<T> extends DaoBase<T> {
         return result;
     }
 
+    /**
+     * Loads the join fields of rows mapped by {@link #mapAll(ResultSet)}
+     *
+     * @return the rows
+     */
+    ArrayList<T> withJoins(ArrayList<T> rows) {
+        if (rows != null)
+            loadJoinObjects(rows);
+        return rows;
+    }
+
+    /**
+     * Loads the join fields with a foreign key of all rows together, see {@link SqlMarker.JoinField#foreignKey()}
+     *
+     * @param rows rows mapped by convertCurrentFromResultSet
+     */
+    protected void loadJoinObjects(List<T> rows) {
+        for (JoinLoader<T, ?> loader : joinLoaders)
+            loader.load(rows);
+    }
+
+    /**
+     * Loads a join field with a foreign key like the Daos created from the class do, for Daos created from
+     * precompiled accessors (e.g. generated Daos). Call it in the constructor
+     *
+     * @param field      name of the join field
+     * @param joined     the joined class, the type argument of the join field
+     * @param foreignKey see {@link SqlMarker.JoinField#foreignKey()}
+     */
+    protected <J> void joinByForeignKey(String field, Class<J> joined, String foreignKey) {
+        for (int i = 0; i < this.rowAccessors.length; i++) {
+            FieldAccessor<T> accessor = this.rowAccessors[i];
+            if (!accessor.isJoinField() || !accessor.getName().equals(field))
+                continue;
+            joinLoaders.add(new JoinLoader<>(accessor, joined, foreignKey, this.primaryKeyAccessors, profileName));
+            this.rowAccessors[i] = accessor.withExtractor((rs, index, result) -> {});
+            return;
+        }
+        throw new IllegalArgumentException("Can't use join field " + field + ": " + this.cls.getName() + " has no such join field");
+    }
+
     @Override
     protected T convertCurrentFromResultSet(ResultSet rs) throws SQLException {
-        try {
-            T result = this.constructor.newInstance();
-
-            for (int i = 1; i <= this.allFields.length; i++) {
-                Field f = this.allFields[i - 1];
-                if (f.getType() == int.class || f.getType() == Integer.class)
-                    f.set(result, rs.getInt(i));
-                else if (f.getType() == long.class || f.getType() == Long.class)
-                    f.set(result, rs.getLong(i));
-                else if (f.getType() == byte.class || f.getType() == Byte.class)
-                    f.set(result, rs.getByte(i));
-                else if (f.getType() == float.class || f.getType() == Float.class)
-                    f.set(result, rs.getFloat(i));
-                else if (f.getType() == double.class || f.getType() == Double.class)
-                    f.set(result, rs.getDouble(i));
-                else if (f.getType() == boolean.class || f.getType() == Boolean.class)
-                		f.set(result, rs.getBoolean(i));
-                else if (f.getType() == String.class)
-                    f.set(result, rs.getString(i));
-                else if (f.getType() == byte[].class)
-                    f.set(result, rs.getBytes(i));
-                else if (f.getType() == Date.class)
-                    f.set(result, rs.getDate(i));
-                else if (f.getType() == Time.class)
-                    f.set(result, rs.getTime(i));
-                else if (f.getType() == Timestamp.class)
-                    f.set(result, rs.getTimestamp(i));
-                else if (isOneToNJoinable && List.class.isAssignableFrom(f.getType()))
-                	f.set(result, getJoinObjects(f, result, this.primaryKeys));
-                else
-                    throw new IllegalStateException("Unknown type of field");
-            }
-            return result;
-        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
-            e.printStackTrace();
-            return null;
+        T result = this.factory.get();
+
+        // the columns of select_list, the join fields don't read the ResultSet
+        int column = 1;
+        for (FieldAccessor<T> accessor : this.rowAccessors) {
+            if (accessor.isLazy())
+                continue;
+            accessor.extract(rs, accessor.isJoinField() ? column : column++, result);
         }
+        ChangeTracker<T> tracker = this.changeTracker;
+        if (tracker != null)
+            tracker.snapshot(result);
+        return result;
     }
     
     protected abstract <J> ArrayList<J> getJoinObjects(Field f, T result, Field[] primaryKeys);
@@ -232,25 +436,251 @@ public abstract class Dao<T> extends DaoBase<T> {
      */
     @Override
     protected void insert(T data) {
-        Database.execute(sql_insert, ps -> setParams(ps, data, this.notAutomatedKeys, 1));
+        if (this.automaticAccessors.length == 0)
+            Database.execute(profileName, sql_insert, ps -> setParams(ps, data, this.notAutomatedAccessors, 1));
+        else
+            Database.executeBatch(profileName, sql_insert, automatic_columns, 1, 1, 
+                    (ps, i) -> setParams(ps, data, this.notAutomatedAccessors, 1),
+                    (keys, first) -> setGeneratedKeys(keys, Collections.singletonList(data), 0));
+        invalidate(data);
     }
     
     
     /**
      * Inserts new rows in the table. Only available if class represents whole table
+     * The rows are written in chunks, see {@link #writeAll(String, ArrayList)}
      * 
      * @param data List with all the data that should be inserted. All fields of all elements will be inserted.
      */
     @Override
     protected void insertAll(ArrayList<T> data) {
-    	String sql_multi_insert = new String(sql_insert);
-    	for(int i = 1; i < data.size(); i++) sql_multi_insert += "," + param_list;
-    	
-    	Database.execute(sql_multi_insert, ps -> {
-    		int index = 1;
+    	writeAll(sql_insert, data);
+    }
+
+    /**
+     * Inserts many rows with the bulk loader of the engine (<code>LOAD DATA LOCAL INFILE</code> on MySQL, 
+     * <code>COPY</code> on PostgreSQL, bulk copy on SQL Server), see {@link Dialect#bulkLoad}. The rows are streamed 
+     * to the loader while they are iterated, so they don't have to be in memory at once. 
+     * Engines without a loader and classes with stream fields (see {@link FieldAccessor#isStream()}) insert them in 
+     * chunks with {@link #insertAll(ArrayList)} instead, each chunk in its own transaction
+     * 
+     * @param data the rows. All fields except the automatic values are written
+     * @return number of loaded rows, -1 if the loader failed
+     * @throws IllegalStateException if a chunk of the inserts failed, the chunks before are written then. 
+     *         The message has the number of written rows
+     */
+    protected long bulkLoad(Iterator<T> data) {
+    	String[] columns = new String[this.notAutomatedAccessors.length];
+    	boolean streams = false;
+    	for(int i = 0; i < columns.length; i++) {
+    		columns[i] = this.notAutomatedAccessors[i].getName();
+    		streams |= this.notAutomatedAccessors[i].isStream();
+    	}
+    	// the loaders write the values as text, streams are passed to the driver by the inserts
+    	if(!streams && Database.getDialect(profileName).supportsBulkLoad()) {
+    		try {
+    			return Database.bulkLoad(profileName, this.tableName, columns, new Iterator<Object[]>() {
+    				@Override
+    				public boolean hasNext() {
+    					return data.hasNext();
+    				}
+    				
+    				@Override
+    				public Object[] next() {
+    					T t = data.next();
+    					invalidate(t);
+    					Object[] row = new Object[notAutomatedAccessors.length];
+    					for(int i = 0; i < row.length; i++)
+    						row[i] = notAutomatedAccessors[i].get(t);
+    					return row;
+    				}
+    			});
+    		} catch(UnsupportedOperationException e) {
+    			// the pool uses another driver for the engine
+    		}
+    	}
+    	int rows = Database.getBatchRows(profileName, this.notAutomatedAccessors.length);
+    	long count = 0;
+    	ArrayList<T> chunk = new ArrayList<>(rows);
+    	while(data.hasNext()) {
+    		chunk.add(data.next());
+    		if(chunk.size() == rows || !data.hasNext()) {
+    			try {
+    				writeAll(sql_insert, chunk);
+    			} catch(IllegalStateException e) {
+    				throw new IllegalStateException("Can't load rows of " + this.tableName + ", " + count 
+    						+ " rows were written before", e);
+    			}
+    			count += chunk.size();
+    			chunk.clear();
+    		}
+    	}
+    	return count;
+    }
+
+    /**
+     * Writes rows with a single row statement in chunks sized by {@link Database#getBatchRows(int)}.
+     * Each chunk is one multi row statement and all full chunks reuse one PreparedStatement.
+     * If the profile doesn't use multi row batches, every row is added to a JDBC batch instead.
+     * All chunks are written in one transaction, see {@link #writeAtomically(String, boolean, BooleanSupplier)}
+     * 
+     * @param sql single row statement ending with the parameter list of the notAutomatedKeys
+     * @param data the rows
+     * @throws IllegalStateException if a statement failed, no row is written then
+     */
+    protected void writeAll(String sql, ArrayList<T> data) {
+    	if(data.isEmpty()) return;
+    	int rows = Database.getBatchRows(profileName, this.notAutomatedAccessors.length);
+    	boolean multiRow = Database.isMultiRowBatch(profileName);
+    	try {
+    		writeAtomically("write", multiRow ? data.size() <= rows : data.size() == 1, () -> {
+    			if(this.automaticAccessors.length > 0)
+    				return writeAllReturningKeys(sql, data, rows, multiRow);
+    			if(!multiRow)
+    				return Database.executeBatch(profileName, sql, data.size(), rows, 
+    						(ps, i) -> setParams(ps, data.get(i), this.notAutomatedAccessors, 1)) >= 0;
+    			int chunks = data.size() / rows;
+    			int rest = data.size() % rows;
+    			if(chunks > 0 && Database.executeBatch(profileName, multiRowSql(sql, rows), chunks, 1, 
+    					(ps, chunk) -> setRows(ps, data, chunk * rows, rows)) < 0)
+    				return false;
+    			return rest == 0 || Database.execute(profileName, multiRowSql(sql, rest), ps -> setRows(ps, data, chunks * rows, rest)) >= 0;
+    		});
+    	} finally {
     		for(T t : data)
-    			index = setParams(ps, t, this.notAutomatedKeys, index);
-    	});
+    			invalidate(t);
+    	}
+    }
+
+    /**
+     * Writes rows like {@link #writeAll(String, ArrayList)} and sets the automatic values of the rows to the 
+     * values generated by the database
+     * 
+     * @return false if a statement failed
+     */
+    private boolean writeAllReturningKeys(String sql, ArrayList<T> data, int rows, boolean multiRow) {
+    	if(!multiRow)
+    		return Database.executeBatch(profileName, sql, automatic_columns, data.size(), rows, 
+    				(ps, i) -> setParams(ps, data.get(i), this.notAutomatedAccessors, 1),
+    				(keys, first) -> setGeneratedKeys(keys, data, first)) >= 0;
+    	int chunks = data.size() / rows;
+    	int rest = data.size() % rows;
+    	if(chunks > 0 && Database.executeBatch(profileName, multiRowSql(sql, rows), automatic_columns, chunks, 1, 
+    			(ps, chunk) -> setRows(ps, data, chunk * rows, rows),
+    			(keys, chunk) -> setGeneratedKeys(keys, data, chunk * rows)) < 0)
+    		return false;
+    	return rest == 0 || Database.executeBatch(profileName, multiRowSql(sql, rest), automatic_columns, 1, 1, 
+    			(ps, chunk) -> setRows(ps, data, chunks * rows, rest),
+    			(keys, chunk) -> setGeneratedKeys(keys, data, chunks * rows)) >= 0;
+    }
+
+    /**
+     * Runs the statements of a chunked write in one transaction, so either all rows are written or none. 
+     * If the current thread already has a transaction on the profile, the statements are part of it and the caller 
+     * decides about the commit. A write of a single statement needs no transaction of its own
+     * 
+     * @param operation name of the write in the error message
+     * @param single whether <code>statements</code> executes only one statement
+     * @param statements executes the statements and stops at the first failed one
+     * @throws IllegalStateException if a statement or the commit failed
+     */
+    private void writeAtomically(String operation, boolean single, BooleanSupplier statements) {
+    	boolean own = !single && !Database.isTransactionActive(profileName);
+    	if(own) {
+    		Database.openTransaction(profileName);
+    		if(!Database.isTransactionActive(profileName))
+    			throw new IllegalStateException("Can't " + operation + " rows of " + this.tableName + ": can't open transaction");
+    	}
+    	boolean written = false;
+    	try {
+    		written = statements.getAsBoolean();
+    	} finally {
+    		if(own) {
+    			if(written) written = Database.commitChecked(profileName);
+    			else Database.rollback(profileName);
+    		}
+    	}
+    	if(!written)
+    		throw new IllegalStateException("Can't " + operation + " rows of " + this.tableName + ", see the logged SQLException");
+    }
+
+    /**
+     * Sets the automatic values of inserted rows to the generated values. The columns of the generated values are
+     * matched by name. A single column with another name (e.g. <code>GENERATED_KEY</code> of MySQL) is the only 
+     * automatic value, or the automatic primary key if there are several automatic values. 
+     * The rows of the generated values are in the order of the inserted rows, unless they have a 
+     * {@link Dialect#GENERATED_ROW} column with the index of their row
+     * 
+     * @param keys the generated values, one row per inserted row
+     * @param data the inserted rows
+     * @param from index of the row of the first generated values
+     * @return number of rows read
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    protected int setGeneratedKeys(ResultSet keys, List<T> data, int from) throws SQLException {
+    	if(keys == null) return 0;
+    	ResultSetMetaData meta = keys.getMetaData();
+    	FieldAccessor<T>[] targets = new FieldAccessor[meta.getColumnCount()];
+    	int rowColumn = 0;
+    	for(int c = 0; c < targets.length; c++) {
+    		String label = meta.getColumnLabel(c + 1);
+    		if(label.equalsIgnoreCase(Dialect.GENERATED_ROW))
+    			rowColumn = c + 1;
+    		for(FieldAccessor<T> accessor : this.automaticAccessors)
+    			if(accessor.getName().equalsIgnoreCase(label))
+    				targets[c] = accessor;
+    	}
+    	if(targets.length == 1 && targets[0] == null)
+    		targets[0] = generatedKeyAccessor();
+    	int count = 0;
+    	while(from + count < data.size() && keys.next()) {
+    		T row = data.get(rowColumn == 0 ? from + count : from + keys.getInt(rowColumn));
+    		for(int c = 0; c < targets.length; c++)
+    			if(targets[c] != null)
+    				targets[c].extract(keys, c + 1, row);
+    		count++;
+    	}
+    	return count;
+    }
+
+    /**
+     * Returns the automatic value a single generated column without a matching name belongs to: 
+     * the only automatic value or the only automatic primary key, <code>null</code> if there is none
+     */
+    private FieldAccessor<T> generatedKeyAccessor() {
+    	if(this.automaticAccessors.length == 1)
+    		return this.automaticAccessors[0];
+    	FieldAccessor<T> key = null;
+    	for(FieldAccessor<T> accessor : this.automaticAccessors) {
+    		if(!accessor.isPrimaryKey()) continue;
+    		if(key != null) return null;
+    		key = accessor;
+    	}
+    	return key;
+    }
+
+    /**
+     * Extends a single row statement to a statement writing several rows
+     * 
+     * @param sql single row statement ending with the parameter list of the notAutomatedKeys
+     * @param rows number of rows
+     * @return sql with <code>rows</code> parameter lists
+     */
+    protected String multiRowSql(String sql, int rows) {
+    	StringBuilder sb = new StringBuilder(sql.length() + (rows - 1) * (param_list.length() + 1));
+    	sb.append(sql);
+    	for(int i = 1; i < rows; i++) sb.append(',').append(param_list);
+    	return sb.toString();
+    }
+
+    private void setRows(PreparedStatement ps, ArrayList<T> data, int from, int count) throws SQLException {
+    	setRows(ps, data, this.notAutomatedAccessors, from, count);
+    }
+
+    private void setRows(PreparedStatement ps, ArrayList<T> data, FieldAccessor<T>[] accessors, int from, int count) throws SQLException {
+    	int index = 1;
+    	for(int i = from; i < from + count; i++)
+    		index = setParams(ps, data.get(i), accessors, index);
     }
 
     /**
@@ -258,16 +688,67 @@ public abstract class Dao<T> extends DaoBase<T> {
      *
      * @param data contains the data that should be inserted. The fields marked as primary keys are used in the WHERE
      *             condition.
-     *             All fields will be updated.
+     *             All fields will be updated, except lazy fields that are <code>null</code> (not loaded) and 
+     *             the unchanged fields of tracked rows, see {@link #enableChangeTracking()}.
      */
     @Override
     protected void update(T data) {
         if (!this.isWholeTable)
             throw new UnsupportedOperationException(
                     "Usage of udpate is not possible: " + this.cls.getName() + " does not represent whole mysql table");
-        Database.execute(sql_update, ps -> {
-            int nextIndex = setParams(ps, data, this.valueFields, 1);
-            setParams(ps, data, this.primaryKeys, nextIndex);
+        ChangeTracker<T> tracker = this.changeTracker;
+        BitSet tracked = tracker == null ? null : tracker.getChanges(data);
+        BitSet changed = tracked != null ? tracked : loadedColumns(data);
+        int count;
+        if (changed == null) {
+            count = Database.execute(profileName, sql_update, ps -> {
+                int nextIndex = setParams(ps, data, this.valueAccessors, 1);
+                setParams(ps, data, this.primaryKeyAccessors, nextIndex);
+            });
+        } else if (changed.isEmpty()) {
+            return;
+        } else {
+            count = Database.execute(profileName, partialUpdateSql(changed), ps -> {
+                int nextIndex = 1;
+                for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1))
+                    nextIndex = this.valueAccessors[i].bind(ps, data, nextIndex);
+                setParams(ps, data, this.primaryKeyAccessors, nextIndex);
+            });
+        }
+        if (tracker != null && count >= 0)
+            tracker.snapshot(data);
+        invalidate(data);
+    }
+
+    /**
+     * Returns the indices of the valueAccessors without the lazy fields that weren't loaded (are <code>null</code>),
+     * <code>null</code> if all columns are loaded
+     */
+    private BitSet loadedColumns(T data) {
+        BitSet loaded = null;
+        for (int i = 0; i < this.valueAccessors.length; i++) {
+            if (this.valueAccessors[i].isLazy() && this.valueAccessors[i].get(data) == null) {
+                if (loaded == null) {
+                    loaded = new BitSet(this.valueAccessors.length);
+                    loaded.set(0, this.valueAccessors.length);
+                }
+                loaded.clear(i);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns the update statement of the changed columns
+     *
+     * @param changed indices of the changed valueAccessors
+     */
+    private String partialUpdateSql(BitSet changed) {
+        return partialUpdates.computeIfAbsent(changed, c -> {
+            StringJoiner set = new StringJoiner(",");
+            for (int i = c.nextSetBit(0); i >= 0; i = c.nextSetBit(i + 1))
+                set.add(this.valueAccessors[i].getName() + "=?");
+            return "UPDATE " + this.tableName + " SET " + set + " WHERE " + primary_list;
         });
     }
     
@@ -275,35 +756,220 @@ public abstract class Dao<T> extends DaoBase<T> {
      * Replaces a row in the table. Only available if class represents whole table
      * 
      * @param data contains the data that should be replaced. All fields of all elements will be inserted/updated.
+     * @throws IllegalStateException if a lazy field wasn't loaded, the new row would have <code>NULL</code> in its column
      */
     protected void replace(T data) {
     		if(!this.isWholeTable)
     			throw new UnsupportedOperationException(
     					"Usage of replace is not possible: " + this.cls.getName() + " does not represent whole table");
-    		Database.execute(sql_replace, ps -> {
-    			int nextIndex = setParams(ps, data, this.valueFields, 1);
-    			setParams(ps, data, this.primaryKeys, nextIndex);
+    		checkLoaded("replace", data);
+    		Database.execute(profileName, sql_replace, ps -> {
+    			int nextIndex = setParams(ps, data, this.valueAccessors, 1);
+    			setParams(ps, data, this.primaryKeyAccessors, nextIndex);
     		});
+    		invalidate(data);
     }
     
     /**
      * Replaces (new) rows in the table. Only available if class represents whole table
+     * The rows are written in chunks, see {@link #writeAll(String, ArrayList)}
      * 
      * @param data List with all the data that should be replaced. All fields of all elements will be inserted/updated.
+     * @throws IllegalStateException if a lazy field of a row wasn't loaded, no row is written then
      */
     protected void replaceAll(ArrayList<T> data) {
-	    	String sql_multi_replace = new String(sql_replace);
-	    	for(int i = 1; i < data.size(); i++) sql_multi_replace += "," + param_list;
-	    	
-	    	Database.execute(sql_multi_replace, ps -> {
-	    		int index = 1;
-	    		for(T t : data)
-	    			index = setParams(ps, t, this.notAutomatedKeys, index);
-	    	});
+    	for(T t : data)
+    		checkLoaded("replace", t);
+    	writeAll(sql_replace, data);
+    }
+    
+    /**
+     * Inserts a row or updates the row with the same primary key. Only available if class represents whole table.
+     * Unlike {@link #replace(Object)} an existing row is updated in place instead of deleted and inserted again, 
+     * see {@link Dialect#getUpsertStatement(String, String[], String[], int)}. The primary keys are given by the row,
+     * so they must not be automatic values. Other automatic values are neither inserted nor updated
+     * 
+     * @param data contains the data that should be inserted/updated. All fields except the automatic values and 
+     *             the lazy fields that are <code>null</code> (not loaded) are written
+     */
+    protected void upsert(T data) {
+    	checkUpsert();
+    	FieldAccessor<T>[] accessors = upsertAccessors(upsertColumns(data));
+    	Database.execute(profileName, upsertSql(accessors, 1), ps -> setParams(ps, data, accessors, 1));
+    	invalidate(data);
+    }
+    
+    /**
+     * Inserts rows or updates the rows with the same primary keys. Only available if class represents whole table.
+     * The rows are written in chunks in one transaction like {@link #writeAll(String, ArrayList)}. The primary keys 
+     * of the rows must be distinct, <code>MERGE</code> can't write a key twice in one statement
+     * 
+     * @param data List with all the data that should be inserted/updated. All fields of all elements except the 
+     *             automatic values and the lazy fields that are <code>null</code> (not loaded) are written. Rows with 
+     *             different unloaded fields are written by different statements
+     * @throws IllegalStateException if a statement failed, no row is written then
+     */
+    protected void upsertAll(ArrayList<T> data) {
+    	checkUpsert();
+    	if(data.isEmpty()) return;
+    	Map<BitSet, ArrayList<T>> groups = new LinkedHashMap<>();
+    	for(T t : data)
+    		groups.computeIfAbsent(upsertColumns(t), c -> new ArrayList<>()).add(t);
+    	int rows = Database.getBatchRows(profileName, this.notAutomatedAccessors.length);
+    	boolean multiRow = Database.isMultiRowBatch(profileName);
+    	boolean single = groups.size() == 1 && (multiRow ? data.size() <= rows : data.size() == 1);
+    	try {
+    		writeAtomically("upsert", single, () -> {
+    			for(Map.Entry<BitSet, ArrayList<T>> group : groups.entrySet())
+    				if(!upsertGroup(group.getValue(), upsertAccessors(group.getKey()), multiRow))
+    					return false;
+    			return true;
+    		});
+    	} finally {
+    		for(T t : data)
+    			invalidate(t);
+    	}
+    }
+    
+    /**
+     * Writes the chunks of rows that have the same loaded columns, see {@link #upsertAll(ArrayList)}
+     * 
+     * @return false if a statement failed
+     */
+    private boolean upsertGroup(ArrayList<T> data, FieldAccessor<T>[] accessors, boolean multiRow) {
+    	int rows = Database.getBatchRows(profileName, accessors.length);
+    	if(!multiRow)
+    		return Database.executeBatch(profileName, upsertSql(accessors, 1), data.size(), rows, 
+    				(ps, i) -> setParams(ps, data.get(i), accessors, 1)) >= 0;
+    	int chunks = data.size() / rows;
+    	int rest = data.size() % rows;
+    	if(chunks > 0 && Database.executeBatch(profileName, upsertSql(accessors, rows), chunks, 1, 
+    			(ps, chunk) -> setRows(ps, data, accessors, chunk * rows, rows)) < 0)
+    		return false;
+    	return rest == 0 || Database.execute(profileName, upsertSql(accessors, rest), 
+    			ps -> setRows(ps, data, accessors, chunks * rows, rest)) >= 0;
+    }
+    
+    /**
+     * Returns the indices of the notAutomatedAccessors written by an upsert of the row: all except the lazy fields 
+     * that weren't loaded (are <code>null</code>)
+     */
+    private BitSet upsertColumns(T data) {
+    	BitSet columns = new BitSet(this.notAutomatedAccessors.length);
+    	for(int i = 0; i < this.notAutomatedAccessors.length; i++)
+    		if(!this.notAutomatedAccessors[i].isLazy() || this.notAutomatedAccessors[i].get(data) != null)
+    			columns.set(i);
+    	return columns;
+    }
+    
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private FieldAccessor<T>[] upsertAccessors(BitSet columns) {
+    	if(columns.cardinality() == this.notAutomatedAccessors.length)
+    		return this.notAutomatedAccessors;
+    	FieldAccessor<T>[] accessors = new FieldAccessor[columns.cardinality()];
+    	int index = 0;
+    	for(int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1))
+    		accessors[index++] = this.notAutomatedAccessors[i];
+    	return accessors;
+    }
+    
+    /**
+     * Returns the upsert statement of a subset of the notAutomatedAccessors, see {@link #upsertSql(int)}
+     */
+    private String upsertSql(FieldAccessor<T>[] accessors, int rows) {
+    	if(accessors == this.notAutomatedAccessors)
+    		return upsertSql(rows);
+    	String[] columns = new String[accessors.length];
+    	for(int i = 0; i < columns.length; i++)
+    		columns[i] = accessors[i].getName();
+    	return Database.getUpsertStatement(profileName, this.tableName, columns, primary_columns, rows);
+    }
+    
+    /**
+     * Returns the upsert statement for the engine of the profile
+     * 
+     * @param rows number of rows written by the statement
+     */
+    protected String upsertSql(int rows) {
+    	return Database.getUpsertStatement(profileName, this.tableName, upsert_columns, primary_columns, rows);
+    }
+    
+    /**
+     * Throws if a lazy field of the row wasn't loaded, the statement would write <code>NULL</code> to its column
+     */
+    private void checkLoaded(String operation, T data) {
+    	for(FieldAccessor<T> field : this.valueAccessors)
+    		if(field.isLazy() && field.get(data) == null)
+    			throw new IllegalStateException("Can't " + operation + " row of " + this.tableName 
+    					+ ": lazy field " + field.getName() + " isn't loaded");
+    }
+    
+    private void checkUpsert() {
+    	if(!this.isWholeTable)
+    		throw new UnsupportedOperationException(
+    				"Usage of upsert is not possible: " + this.cls.getName() + " does not represent whole table");
+    	if(primary_columns.length == 0)
+    		throw new UnsupportedOperationException(
+    				"Usage of upsert is not possible: " + this.cls.getName() + " has no primary key");
+    	for(FieldAccessor<T> key : this.primaryKeyAccessors)
+    		if(key.isAutomaticValue())
+    			throw new UnsupportedOperationException("Usage of upsert is not possible: primary key " + key.getName() 
+    					+ " of " + this.cls.getName() + " is an automatic value, use insert and update");
     }
     
     protected void delete(T data) {
-    	Database.execute(sql_delete, ps -> setParams(ps, data, primaryKeys, 1));
+    	Database.execute(profileName, sql_delete, ps -> setParams(ps, data, this.primaryKeyAccessors, 1));
+    	ChangeTracker<T> tracker = this.changeTracker;
+    	if(tracker != null)
+    		tracker.forget(data);
+    	invalidate(data);
+    }
+
+    /**
+     * Deletes the rows of several primary keys with chunked <code>WHERE pk IN (...)</code> statements sized by 
+     * {@link Database#getBatchRows(int)}. All full chunks reuse one PreparedStatement. 
+     * All chunks are deleted in one transaction like {@link #writeAll(String, ArrayList)}.
+     *
+     * @param keys contain the primary keys of the rows (only the primary keys are used)
+     * @throws IllegalStateException if a statement failed, no row is deleted then
+     */
+    protected void deleteAll(Collection<T> keys) {
+    	if(primary_columns.length == 0)
+    		throw new UnsupportedOperationException(
+    				"Usage of deleteAll is not possible: " + this.cls.getName() + " has no primary key");
+    	Map<EntityKey, T> distinct = new LinkedHashMap<>();
+    	for(T data : keys)
+    		distinct.putIfAbsent(EntityKey.of(data, this.primaryKeyAccessors), data);
+    	if(distinct.isEmpty()) return;
+    	List<T> data = new ArrayList<>(distinct.values());
+    	int rows = Database.getBatchRows(profileName, this.primaryKeyAccessors.length);
+    	int chunks = data.size() / rows;
+    	int rest = data.size() % rows;
+    	try {
+    		writeAtomically("delete", data.size() <= rows, () -> {
+    			if(chunks > 0 && Database.executeBatch(profileName, deleteSql(rows), chunks, 1, 
+    					(ps, chunk) -> setKeys(ps, data, chunk * rows, rows)) < 0)
+    				return false;
+    			return rest == 0 || Database.execute(profileName, deleteSql(rest), ps -> setKeys(ps, data, chunks * rows, rest)) >= 0;
+    		});
+    	} finally {
+    		for(T t : data)
+    			invalidate(t);
+    	}
+    	ChangeTracker<T> tracker = this.changeTracker;
+    	if(tracker != null)
+    		for(T t : data)
+    			tracker.forget(t);
+    }
+    
+    private String deleteSql(int rows) {
+    	return "DELETE FROM " + this.tableName + " WHERE " + Database.getKeyListPredicate(profileName, primary_columns, rows);
+    }
+    
+    private void setKeys(PreparedStatement ps, List<T> data, int from, int count) throws SQLException {
+    	int index = 1;
+    	for(int i = from; i < from + count; i++)
+    		index = setParams(ps, data.get(i), this.primaryKeyAccessors, index);
     }
 
     /**
@@ -315,10 +981,435 @@ public abstract class Dao<T> extends DaoBase<T> {
      */
     @Override
     protected T select(T data) {
-    	return Database.query(sql_select, ps -> setParams(ps, data, this.primaryKeys, 1), this::convFirstInResultSet);
+    	EntityCache<T> cache = readCache();
+    	if(cache == null)
+    		return selectRow(data);
+    	
+    	EntityKey key = EntityKey.of(data, this.primaryKeyAccessors);
+    	T cached = cache.get(key);
+    	if(cached != null) {
+    		T result = copy(cached);
+    		ChangeTracker<T> tracker = this.changeTracker;
+    		if(tracker != null)
+    			tracker.snapshot(result);
+    		return result;
+    	}
+    	long generation = cache.getGeneration();
+    	T result = selectRow(data);
+    	if(result != null) cache.put(key, copy(result), generation);
+    	return result;
+    }
+    
+    /**
+     * Selects a row by its primary keys. The join fields are loaded after the connection of the query is released, 
+     * so a select never holds two connections
+     */
+    private T selectRow(T data) {
+    	T result = Database.query(profileName, sql_select, ps -> setParams(ps, data, this.primaryKeyAccessors, 1), 
+    			rs -> rs != null && rs.next() ? convertCurrentFromResultSet(rs) : null);
+    	if(result != null)
+    		loadJoinObjects(Collections.singletonList(result));
+    	return result;
+    }
+    
+    /**
+     * Asynchronous {@link #select(Object)}, see {@link Database#supplyReadAsync(String, Supplier)}
+     */
+    protected CompletableFuture<T> selectAsync(T data) {
+    	return Database.supplyReadAsync(profileName, () -> select(data));
+    }
+    
+    /**
+     * Asynchronous {@link #selectAll()}, see {@link Database#supplyReadAsync(String, Supplier)}
+     */
+    protected CompletableFuture<ArrayList<T>> selectAllAsync() {
+    	return Database.supplyReadAsync(profileName, () -> selectAll());
+    }
+    
+    /**
+     * Asynchronous {@link #insert(Object)}, see {@link Database#runAsync(String, Runnable)}
+     */
+    protected CompletableFuture<Void> insertAsync(T data) {
+    	return Database.runAsync(profileName, () -> insert(data));
+    }
+    
+    /**
+     * Asynchronous {@link #insertAll(ArrayList)}, see {@link Database#runAsync(String, Runnable)}
+     */
+    protected CompletableFuture<Void> insertAllAsync(ArrayList<T> data) {
+    	return Database.runAsync(profileName, () -> insertAll(data));
+    }
+    
+    /**
+     * Asynchronous {@link #update(Object)}, see {@link Database#runAsync(String, Runnable)}
+     */
+    protected CompletableFuture<Void> updateAsync(T data) {
+    	return Database.runAsync(profileName, () -> update(data));
+    }
+    
+    /**
+     * Asynchronous {@link #replace(Object)}, see {@link Database#runAsync(String, Runnable)}
+     */
+    protected CompletableFuture<Void> replaceAsync(T data) {
+    	return Database.runAsync(profileName, () -> replace(data));
+    }
+    
+    /**
+     * Asynchronous {@link #upsert(Object)}, see {@link Database#runAsync(String, Runnable)}
+     */
+    protected CompletableFuture<Void> upsertAsync(T data) {
+    	return Database.runAsync(profileName, () -> upsert(data));
+    }
+    
+    /**
+     * Asynchronous {@link #upsertAll(ArrayList)}, see {@link Database#runAsync(String, Runnable)}
+     */
+    protected CompletableFuture<Void> upsertAllAsync(ArrayList<T> data) {
+    	return Database.runAsync(profileName, () -> upsertAll(data));
+    }
+    
+    /**
+     * Asynchronous {@link #delete(Object)}, see {@link Database#runAsync(String, Runnable)}
+     */
+    protected CompletableFuture<Void> deleteAsync(T data) {
+    	return Database.runAsync(profileName, () -> delete(data));
+    }
+    
+    /**
+     * Enables a cache for {@link #select(Object)} by primary key. The cache is invalidated by all writes through this Dao,
+     * but not by writes through other Daos or plain sql. Callers always get their own copy of a cached row.
+     * While the current thread has a transaction open on the profile, the cache is neither read nor filled, so 
+     * uncommitted rows never get into it. Stream fields are never cached, they aren't selected anyway and 
+     * a stream can only be read once, see {@link #copy(Object)}
+     * 
+     * @param maxSize maximum number of cached rows, the least recently used rows are evicted first
+     * @param ttlMillis time to live of a cached row in milliseconds, 0 for no limit
+     */
+    protected void enableCache(int maxSize, long ttlMillis) {
+    	this.cache = new EntityCache<>(maxSize, ttlMillis);
+    }
+    
+    /**
+     * Returns the cache of select with its hit/miss/eviction counters or <code>null</code> if the cache isn't enabled
+     */
+    public EntityCache<T> getCache() {
+    	return cache;
+    }
+    
+    /**
+     * Enables change tracking: every row loaded by this Dao gets a snapshot of its values, and {@link #update(Object)}
+     * of a loaded row only writes the changed columns (or nothing if no column changed). Rows that weren't loaded by 
+     * this Dao are updated completely. The snapshots are held by weak references, so rows can be garbage collected 
+     * as usual. After a rollback the snapshots of the rows updated in the transaction don't match the database, 
+     * reload these rows before updating them again. Stream fields aren't tracked, they are written whenever they 
+     * aren't <code>null</code>
+     */
+    protected void enableChangeTracking() {
+    	if(this.changeTracker == null)
+    		this.changeTracker = new ChangeTracker<>(this.valueAccessors);
+    }
+    
+    /**
+     * Removes a row from the cache after it was written
+     * 
+     * @param data contains the primary keys of the row
+     */
+    protected void invalidate(T data) {
+    	EntityCache<T> cache = this.cache;
+    	if(cache != null)
+    		cache.invalidate(EntityKey.of(data, this.primaryKeyAccessors));
+    }
+    
+    /**
+     * Returns the cache of select if it is enabled and can be used by the current thread, 
+     * <code>null</code> while the thread has a transaction open on the profile
+     */
+    private EntityCache<T> readCache() {
+    	EntityCache<T> cache = this.cache;
+    	if(cache == null || Database.isTransactionActive(profileName)) return null;
+    	return cache;
+    }
+    
+    /**
+     * Creates a copy of a row. Arrays, dates and the lists of join fields are copied, so changing them in the copy
+     * doesn't change the row. The joined objects themselves are shared. Stream fields (see 
+     * {@link FieldAccessor#isStream()}) are <code>null</code> in the copy, a stream can only be read once
+     */
+    protected T copy(T data) {
+    	T copy = this.factory.get();
+    	for(FieldAccessor<T> accessor : this.rowAccessors)
+    		if(!accessor.isStream())
+    			accessor.set(copy, ChangeTracker.copyValue(accessor.get(data)));
+    	return copy;
     }
     
     protected ArrayList<T> selectAll() {
-    	return Database.query("SELECT * FROM " + this.tableName, this::convAllInResultSet);
+    	return withJoins(Database.query(profileName, "SELECT " + select_list + " FROM " + this.tableName, ps -> {}, this::mapAll));
+    }
+    
+    /**
+     * Returns the rows of several primary keys. The rows are selected in chunks of <code>WHERE pk IN (...)</code> 
+     * queries sized by {@link Database#getBatchRows(int)}, so the parameter limit of the engine isn't exceeded. 
+     * Rows in the cache of select are taken from the cache
+     *
+     * @param keys contain the primary keys of the rows (only the primary keys are used)
+     * @return the found rows by their primary keys, in the order of <code>keys</code>. Keys without a row are missing
+     */
+    protected Map<EntityKey, T> selectAll(Collection<T> keys) {
+    	if(primary_columns.length == 0)
+    		throw new UnsupportedOperationException(
+    				"Usage of selectAll by keys is not possible: " + this.cls.getName() + " has no primary key");
+    	EntityCache<T> cache = readCache();
+    	ChangeTracker<T> tracker = this.changeTracker;
+    	long generation = cache == null ? 0 : cache.getGeneration();
+    	Map<EntityKey, T> result = new LinkedHashMap<>();
+    	List<T> missing = new ArrayList<>();
+    	for(T data : keys) {
+    		EntityKey key = EntityKey.of(data, this.primaryKeyAccessors);
+    		if(result.containsKey(key)) continue;
+    		T cached = cache == null ? null : cache.get(key);
+    		if(cached != null) {
+    			cached = copy(cached);
+    			if(tracker != null)
+    				tracker.snapshot(cached);
+    		} else {
+    			missing.add(data);
+    		}
+    		// keeps the order of the keys, rows that aren't found are removed below
+    		result.put(key, cached);
+    	}
+    	
+    	int rows = Database.getBatchRows(profileName, this.primaryKeyAccessors.length);
+    	for(int from = 0; from < missing.size(); from += rows) {
+    		List<T> chunk = missing.subList(from, Math.min(from + rows, missing.size()));
+    		String sql = "SELECT " + select_list + " FROM " + this.tableName 
+    				+ " WHERE " + Database.getKeyListPredicate(profileName, primary_columns, chunk.size());
+    		ArrayList<T> loaded = withJoins(Database.query(profileName, sql, ps -> {
+    			int index = 1;
+    			for(T data : chunk)
+    				index = setParams(ps, data, this.primaryKeyAccessors, index);
+    		}, this::mapAll));
+    		if(loaded == null) continue;
+    		for(T row : loaded) {
+    			EntityKey key = EntityKey.of(row, this.primaryKeyAccessors);
+    			result.put(key, row);
+    			if(cache != null)
+    				cache.put(key, copy(row), generation);
+    		}
+    	}
+    	result.values().removeIf(Objects::isNull);
+    	return result;
+    }
+
+    /**
+     * Returns a row with only some of its columns, e.g. without large columns that aren't needed. 
+     * The other fields keep their default values, the join fields aren't loaded. 
+     * Take care to not {@link #update(Object)} all columns of such a row, change tracking only updates the changed 
+     * columns (see {@link #enableChangeTracking()})
+     *
+     * @param data contains the primary keys for use in the WHERE condition
+     * @param fields names of the selected fields, the primary keys are always selected
+     * @return T object containing the selected columns, <code>null</code> if there is no row
+     */
+    protected T select(T data, String... fields) {
+        Projection projection = projection(fields);
+        return Database.query(profileName, projection.columns + " WHERE " + primary_list, 
+                ps -> setParams(ps, data, this.primaryKeyAccessors, 1), 
+                rs -> rs != null && rs.next() ? projection.convert(rs) : null);
+    }
+
+    /**
+     * Returns all rows with only some of their columns, see {@link #select(Object, String...)}
+     *
+     * @param fields names of the selected fields, the primary keys are always selected
+     */
+    protected ArrayList<T> selectAll(String... fields) {
+        Projection projection = projection(fields);
+        return Database.query(profileName, projection.columns, ps -> {}, rs -> {
+            if (rs == null) return null;
+            ArrayList<T> result = new ArrayList<>();
+            while (rs.next())
+                result.add(projection.convert(rs));
+            return result;
+        });
+    }
+
+    /**
+     * Loads a field that wasn't selected, e.g. a {@link SqlMarker.LazyField}
+     *
+     * @param data contains the primary keys of the row, the field is set on it
+     * @param field name of the field, read stream fields with {@link #load(Object, String, Consumer)}
+     * @return false if there is no row
+     */
+    protected boolean load(T data, String field) {
+        int index = valueIndex(field);
+        FieldAccessor<T> accessor = this.valueAccessors[index];
+        checkNotStream("load", accessor);
+        Boolean found = Database.query(profileName, "SELECT " + accessor.getName() + " FROM " + this.tableName 
+                + " WHERE " + primary_list, ps -> setParams(ps, data, this.primaryKeyAccessors, 1), rs -> {
+                    if (rs == null || !rs.next()) return false;
+                    accessor.extract(rs, 1, data);
+                    return true;
+                });
+        ChangeTracker<T> tracker = this.changeTracker;
+        if (tracker != null && Boolean.TRUE.equals(found))
+            tracker.snapshot(data, index);
+        return Boolean.TRUE.equals(found);
+    }
+
+    /**
+     * Reads a field while the <code>ResultSet</code> is open, e.g. a stream field (see {@link FieldAccessor#isStream()}) 
+     * that can't be read after the statement is closed. The field is only set while <code>reader</code> runs and 
+     * is <code>null</code> afterwards
+     *
+     * @param data contains the primary keys of the row
+     * @param field name of the field
+     * @param reader reads the field of <code>data</code>, isn't called if there is no row
+     * @return false if there is no row
+     */
+    protected boolean load(T data, String field, Consumer<T> reader) {
+        FieldAccessor<T> accessor = this.valueAccessors[valueIndex(field)];
+        Boolean found = Database.query(profileName, "SELECT " + accessor.getName() + " FROM " + this.tableName 
+                + " WHERE " + primary_list, ps -> setParams(ps, data, this.primaryKeyAccessors, 1), rs -> {
+                    if (rs == null || !rs.next()) return false;
+                    accessor.extract(rs, 1, data);
+                    try {
+                        reader.accept(data);
+                    } finally {
+                        accessor.set(data, null);
+                    }
+                    return true;
+                });
+        return Boolean.TRUE.equals(found);
+    }
+
+    /**
+     * Stream fields are only readable while the <code>ResultSet</code> is open, so they can't be materialized
+     */
+    private void checkNotStream(String operation, FieldAccessor<T> accessor) {
+        if (accessor.isStream())
+            throw new UnsupportedOperationException("Usage of " + operation + " is not possible: " + accessor.getName() 
+                    + " is a stream field, read it with load(data, field, reader)");
+    }
+
+    /**
+     * Selected columns and their accessors of a projection
+     */
+    private final class Projection {
+        private final String columns;
+        private final FieldAccessor<T>[] accessors;
+
+        private Projection(String columns, FieldAccessor<T>[] accessors) {
+            this.columns = columns;
+            this.accessors = accessors;
+        }
+
+        private T convert(ResultSet rs) throws SQLException {
+            T result = factory.get();
+            for (int i = 0; i < accessors.length; i++)
+                accessors[i].extract(rs, i + 1, result);
+            ChangeTracker<T> tracker = changeTracker;
+            if (tracker != null)
+                tracker.snapshot(result);
+            return result;
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Projection projection(String[] fields) {
+        return projections.computeIfAbsent(Arrays.asList(fields), key -> {
+            Set<FieldAccessor<T>> selected = new LinkedHashSet<>(Arrays.asList(this.primaryKeyAccessors));
+            for (String field : fields) {
+                FieldAccessor<T> accessor = this.valueAccessors[valueIndex(field)];
+                checkNotStream("select", accessor);
+                selected.add(accessor);
+            }
+            StringJoiner columns = new StringJoiner(",", "SELECT ", " FROM " + this.tableName);
+            for (FieldAccessor<T> accessor : selected)
+                columns.add(accessor.getName());
+            return new Projection(columns.toString(), selected.toArray(new FieldAccessor[0]));
+        });
+    }
+
+    /**
+     * Returns the index of a field in valueAccessors
+     *
+     * @throws IllegalArgumentException if T has no such column field
+     */
+    private int valueIndex(String field) {
+        for (int i = 0; i < this.valueAccessors.length; i++)
+            if (this.valueAccessors[i].getName().equals(field))
+                return i;
+        throw new IllegalArgumentException(this.cls.getName() + " has no column field " + field);
+    }
+
+    /**
+     * Returns a page of rows sorted by the primary keys, the rows after <code>afterKey</code>. 
+     * Uses keyset pagination instead of an offset, so every page is a seek on the primary key index 
+     * no matter how deep it is
+     * 
+     * @param afterKey contains the primary keys of the last row of the page before (only the primary keys are used),
+     *                 <code>null</code> for the first page
+     * @param limit maximum number of rows of the page
+     * @return the rows, empty after the last page
+     */
+    protected ArrayList<T> selectPage(T afterKey, int limit) {
+    	if(primary_columns.length == 0)
+    		throw new UnsupportedOperationException(
+    				"Usage of selectPage is not possible: " + this.cls.getName() + " has no primary key");
+    	Dialect dialect = Database.getDialect(profileName);
+    	String sql = "SELECT " + select_list + " FROM " + this.tableName 
+    			+ (afterKey == null ? "" : " WHERE " + dialect.getKeysetPredicate(primary_columns)) 
+    			+ " ORDER BY " + String.join(",", primary_columns) + dialect.getLimitClause(limit);
+    	return withJoins(Database.query(profileName, sql, ps -> {
+    		if(afterKey == null) return;
+    		int[] keys = dialect.getKeysetParameters(primary_columns.length);
+    		for(int i = 0; i < keys.length; i++)
+    			this.primaryKeyAccessors[keys[i]].bind(ps, afterKey, i + 1);
+    	}, this::mapAll));
+    }
+    
+    /**
+     * Returns an iterator over all pages of the table, see {@link #selectPage(Object, int)}. 
+     * Each page is selected when the iterator reaches it
+     * 
+     * @param limit maximum number of rows of a page
+     */
+    protected PageIterator<T> pages(int limit) {
+    	return new PageIterator<>(this::selectPage, limit);
+    }
+
+    /**
+     * Returns all rows of the table as a stream that maps the rows while it is consumed, so the memory used doesn't
+     * depend on the size of the table. The stream holds a connection until it is closed and must be closed, 
+     * e.g. with try-with-resources. The join fields with a foreign key are loaded for blocks of 
+     * {@link Database#getBatchRows(String, int)} rows, so only the rows of one block are held in memory
+     * 
+     * @return stream of all rows
+     */
+    protected Stream<T> streamAll() {
+    	Stream<T> rows = Database.queryStream(profileName, "SELECT " + select_list + " FROM " + this.tableName, ps -> {}, 
+    			this::convertCurrentFromResultSet);
+    	if(joinLoaders.isEmpty()) return rows;
+    	int block = Database.getBatchRows(profileName, this.primaryKeyAccessors.length);
+    	Iterator<T> mapped = rows.iterator();
+    	Spliterator<T> loaded = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED) {
+    		private final ArrayDeque<T> buffer = new ArrayDeque<>(block);
+    		
+    		@Override
+    		public boolean tryAdvance(Consumer<? super T> action) {
+    			if(buffer.isEmpty()) {
+    				List<T> next = new ArrayList<>(block);
+    				while(next.size() < block && mapped.hasNext())
+    					next.add(mapped.next());
+    				if(next.isEmpty()) return false;
+    				loadJoinObjects(next);
+    				buffer.addAll(next);
+    			}
+    			action.accept(buffer.poll());
+    			return true;
+    		}
+    	};
+    	return StreamSupport.stream(loaded, false).onClose(rows::close);
     }
 }
\ No newline at end of file
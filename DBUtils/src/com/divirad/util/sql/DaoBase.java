@@ -4,11 +4,16 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
 import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.function.Supplier;
 
 public abstract class DaoBase<T> {
 
 	protected Class<T> cls;
     protected Constructor<T> constructor;
+    /**
+     * Creates new instances of T. Uses the default constructor unless a factory was passed to the constructor
+     */
+    protected Supplier<T> factory;
     
     public DaoBase(Class<T> cls) {
     	this.cls = cls;
@@ -23,6 +28,24 @@ public abstract class DaoBase<T> {
         } catch (NoSuchMethodException e) {
             throw new IllegalArgumentException("Can't use class: No default constructor");
         }
+        this.factory = () -> {
+            try {
+                return this.constructor.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Can't create instance of " + cls.getName(), e);
+            }
+        };
+    }
+    
+    /**
+     * Creates a Dao that instantiates T with a factory instead of reflection, e.g. a generated Dao
+     * 
+     * @param cls class of T
+     * @param factory creates new instances of T, usually <code>T::new</code>
+     */
+    public DaoBase(Class<T> cls, Supplier<T> factory) {
+    	this.cls = cls;
+    	this.factory = factory;
     }
     
     protected abstract T convFirstInResultSet(ResultSet rs) throws Exception;
@@ -43,5 +66,7 @@ public abstract class DaoBase<T> {
     
     protected abstract void replace(T data) throws Exception;
     
+    protected abstract void upsert(T data) throws Exception;
+    
     protected abstract void delete(T data) throws Exception;
 }
@@ -5,16 +5,41 @@ import java.beans.PropertyChangeListener;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
 
 import org.apache.commons.dbcp2.BasicDataSource;
 import org.slf4j.Logger;
@@ -24,83 +49,248 @@ import org.slf4j.LoggerFactory;
 /**
  * Wrapper for all operations done on a database.
  * Loads database connection properties from a properties file in the application directory <code>properties.prop</code>
+ * when it is used first, unless it was configured before with one of the <code>configure</code> methods 
+ * (e.g. with an existing {@link DataSource} by {@link #configure(String, String, DataSource)})
  * 
  * The properties needed are
- * - engine
+ * - engine (mysql, sqlserver, postgresql, h2 or sqlite, or an engine registered with {@link EngineSpecifics#registerDialect(Dialect)})
  * - hostname
  * - database
  * - username
  * - password
  * - useIntegratedSecurity (if this is set, no need for username & password)
  * - params (any additional parameters that should be added to the end of the connection string)
+ * - url (optional, replaces the connection string built from the properties above, 
+ *   e.g. <code>jdbc:h2:mem:test;MODE=MySQL</code> to run against an embedded database)
  * Each of these properties uses the prefix <code>db.</code>
  * 
+ * Optional properties for batched writes ({@link Dao#insertAll}, {@link Dao#replaceAll}, {@link Dao#upsertAll})
+ * - batch.rows (rows per statement/batch, default depends on the engine)
+ * - batch.parameters (maximum parameters per statement, default depends on the engine)
+ * - batch.multiRow (true: one multi row INSERT per chunk, false: one single row INSERT per row sent with addBatch; 
+ *   use false with drivers that rewrite batches themselves, e.g. MySQL with <code>rewriteBatchedStatements=true</code>)
+ * 
+ * Optional properties of the connection pool (with prefix <code>pool.</code>, e.g. <code>db.pool.maxTotal</code>)
+ * - initialSize, minIdle (default 5), maxIdle (default 10), maxTotal, maxWaitMillis
+ * - poolPreparedStatements (default true), maxOpenPreparedStatements (default 100, per connection)
+ * - validationQuery, validationQueryTimeoutSeconds, testOnBorrow, testOnReturn, testWhileIdle
+ * - timeBetweenEvictionRunsMillis, minEvictableIdleTimeMillis, numTestsPerEvictionRun
+ * 
+ * Optional properties for streamed queries ({@link #queryStream})
+ * - stream.fetchSize (fetch size of streamed queries, default depends on the engine. For MySQL, use a positive value 
+ *   together with <code>useCursorFetch=true</code> in params to use a server side cursor instead of row streaming)
+ * 
+ * Optional properties of the slow query log (logger <code>com.divirad.util.sql.SlowQueryLog</code>)
+ * - slowQuery.thresholdMillis (statements taking at least this long are logged with their parameters, default -1: off)
+ * - slowQuery.sampleRate (part of the slow statements that is logged, default 1)
+ * - slowQuery.explain (true: log the execution plan of logged statements, fetched on another connection with the 
+ *   recorded parameter values. Not for statements with stream or LOB parameters, default false)
+ * 
+ * Optional properties for read replicas
+ * - replicas (names of other profiles split by a single comma. Queries ({@link #query}, {@link #queryStream} and the 
+ *   selects of the Daos) outside of a transaction run on the pools of these profiles, everything else on this profile. 
+ *   Replicas may lag behind, so read data that was just written inside a transaction)
+ * - replicaBalancing (roundRobin (default) or leastActive: the replica with the fewest borrowed connections)
+ * 
  * Multiple database profiles can be created by specifying a <code>profiles</code> property which lists the names of the profiles split by
  * a single comma (no space). 
  * Then, for each profile, instead of just the <code>db.</code> prefix, use <code>db.profilename.</code> prefix
+ * 
+ * Every profile has its own connection pool, opened when the profile is used first. The operations without a profile 
+ * name use the active profile (see {@link #loadProfile(String)}), the operations with a profile name and the Daos 
+ * bound to a profile (e.g. {@link OpenDao#OpenDao(Class, String)}) use the pool of that profile, so several 
+ * databases can be used at the same time
  */
 public class Database {
 	
 	private static class DBProfile {
 		private String engine;   
+		private Dialect dialect;
 		private String hostname; 
 		private String database; 
 		private String username; 
 		private String password; 
 		private String params;	 
+		private String url;
 		private boolean integratedSecurity;		
+		private int batchRows;
+		private int batchParameters;
+		private boolean batchMultiRow;
+		private int streamFetchSize;
+		private long slowQueryMillis;
+		private double slowQuerySampleRate;
+		private boolean slowQueryExplain;
+		private String[] replicas;
+		private boolean replicaLeastActive;
+		private Properties pool = new Properties();
+		/**
+		 * Pool of the application used instead of a pool of its own, see {@link Database#configure(String, Properties, DataSource)}
+		 */
+		private DataSource dataSource;
 	}
 	
-	private static Map<String, DBProfile> dbprofiles = new HashMap<>();	
-	private static String activeProfileName = "default";
+	private static Map<String, DBProfile> dbprofiles = new ConcurrentHashMap<>();	
+	private static volatile String activeProfileName = "default";
+	/**
+	 * Whether profiles were configured, otherwise <code>properties.prop</code> is loaded on first use
+	 */
+	private static volatile boolean configured;
 	
-	private static DBCPDataSource ds;
+	/**
+	 * The open pools by profile name
+	 */
+	private static Map<String, DBCPDataSource> pools = new ConcurrentHashMap<>();
+	
+	/**
+	 * Statements prepared by {@link #warmUp(String)} by profile name, 
+	 * statements of Daos not bound to a profile use the key <code>""</code>
+	 */
+	private static Map<String, Set<String>> warmUpStatements = new ConcurrentHashMap<>();
+	
+	/**
+	 * Runs the asynchronous operations, virtual threads if the runtime supports them. 
+	 * <code>null</code> if every pool runs them on its own fixed threads, see {@link DBCPDataSource#executor()}
+	 */
+	private static Executor asyncExecutor = createAsyncExecutor();
+	
+	/**
+	 * The primary pool and the replica an asynchronous read operation of the current thread was started for, 
+	 * see {@link #supplyReadAsync(String, Supplier)}
+	 */
+	private static final ThreadLocal<DBCPDataSource[]> pinnedReplica = new ThreadLocal<>();
+	
+	/**
+	 * Set while the current thread runs an asynchronous operation, so nested asynchronous operations run on it 
+	 * instead of waiting for a permit or thread held by their caller
+	 */
+	private static final ThreadLocal<Boolean> runningAsync = new ThreadLocal<>();
 	
 	private static List<PropertyChangeListener> listenerList = new ArrayList<>();
 	
+	private static List<StatementListener> statementListeners = new CopyOnWriteArrayList<>();
+	private static StatementMetrics metrics;
+	
 	static Logger log = LoggerFactory.getLogger(Database.class);
 	
-	static {
-		loadProperties();
+	/**
+	 * Loads the profiles from <code>./properties.prop</code>
+	 * 
+	 * @throws IllegalStateException if the file can't be read
+	 */
+	public static void loadProperties() {
+		loadProperties("./properties.prop");
 	}
 	
-	public static void loadProperties() {
-		String path = "./properties.prop";
-		try {
-			FileInputStream fis = new FileInputStream(path);
-			Properties props = new Properties();
+	/**
+	 * Loads the profiles from a properties file, see {@link #configure(Properties)}
+	 * 
+	 * @throws IllegalStateException if the file can't be read
+	 */
+	public static void loadProperties(String path) {
+		Properties props = new Properties();
+		try(FileInputStream fis = new FileInputStream(path)) {
 			props.load(fis);
-			
-			String profiles = props.getProperty("db.profiles", null);
-			
-			if(profiles == null) {
-				DBProfile p = new DBProfile();
-				p.engine = props.getProperty("db.engine", "mysql");
-				p.hostname = props.getProperty("db.hostname");
-				p.database = props.getProperty("db.database");
-			    p.username = props.getProperty("db.username", "");
-			    p.password = props.getProperty("db.password", "");
-			    p.integratedSecurity = Boolean.parseBoolean(props.getProperty("db.useIntegratedSecurity", "false"));
-			    p.params = props.getProperty("db.params", "");
-			    dbprofiles.put("default", p);
-			} else {
-				for(String pName : profiles.split(","))
-					dbprofiles.put(pName, readProfile(props, pName));
-			}
 		} catch (FileNotFoundException e) {
-			System.err.println("Database properties file not found");
-			System.exit(1);
+			throw new IllegalStateException("Database properties file " + path + " not found", e);
 		} catch (IOException e) {
-			System.err.println(e.getMessage());
-			System.exit(1);
+			throw new IllegalStateException("Can't read database properties file " + path, e);
+		}
+		configure(props);
+	}
+	
+	/**
+	 * Adds the profiles of properties in the format of <code>properties.prop</code>. 
+	 * A profile with the name of an existing profile replaces it and closes its pool. 
+	 * If the active profile doesn't exist, the first added profile becomes the active profile
+	 */
+	public static synchronized void configure(Properties props) {
+		String profiles = props.getProperty("db.profiles", null);
+		
+		if(profiles == null) {
+		    addProfile("default", readProfile(props, "db."));
+		} else {
+			for(String pName : profiles.split(","))
+				addProfile(pName, readProfile(props, "db." + pName + "."));
+		}
+	}
+	
+	/**
+	 * Adds a profile, see {@link #configure(Properties)}
+	 * 
+	 * @param profileName name of the profile
+	 * @param profile the properties of the profile without prefix, e.g. <code>engine</code>, <code>hostname</code>, 
+	 *                <code>pool.maxTotal</code>
+	 */
+	public static void configure(String profileName, Properties profile) {
+		addProfile(profileName, readProfile(profile, ""));
+	}
+	
+	/**
+	 * Adds a profile using a pool of the application instead of a pool of its own. 
+	 * The connection and <code>pool.</code> properties are not used, except <code>pool.maxTotal</code> and 
+	 * <code>pool.minIdle</code> for the limit of asynchronous operations and {@link #warmUp(String)}.
+	 * The pool is not closed by {@link #shutdown(String)}, it belongs to the application
+	 * 
+	 * @param profileName name of the profile
+	 * @param profile the properties of the profile without prefix, see {@link #configure(String, Properties)}
+	 * @param dataSource the pool
+	 */
+	public static void configure(String profileName, Properties profile, DataSource dataSource) {
+		DBProfile p = readProfile(profile, "");
+		p.dataSource = dataSource;
+		addProfile(profileName, p);
+	}
+	
+	/**
+	 * Adds a profile using a pool of the application with default settings, 
+	 * see {@link #configure(String, Properties, DataSource)}
+	 * 
+	 * @param engine the engine of the database, e.g. <code>mysql</code>
+	 */
+	public static void configure(String profileName, String engine, DataSource dataSource) {
+		Properties profile = new Properties();
+		profile.setProperty("engine", engine);
+		configure(profileName, profile, dataSource);
+	}
+	
+	private static synchronized void addProfile(String profileName, DBProfile p) {
+		dbprofiles.put(profileName, p);
+		DBCPDataSource old = pools.remove(profileName);
+		try {
+			if(old != null) old.shutdown();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		if(!dbprofiles.containsKey(activeProfileName))
+			activeProfileName = profileName;
+		configured = true;
+	}
+	
+	/**
+	 * Loads <code>./properties.prop</code> if no profile was configured yet
+	 */
+	private static void ensureConfigured() {
+		if(configured) return;
+		synchronized(Database.class) {
+			if(!configured) loadProperties();
 		}
 	}
 	
 	public static Set<String> getProfileNames() {
+		ensureConfigured();
 		return dbprofiles.keySet();
 	}
 	
+	/**
+	 * Returns the names of the profiles with an open pool, i.e. the profiles and replicas used since their last 
+	 * {@link #shutdown(String)}
+	 */
+	public static Set<String> getOpenPoolNames() {
+		return new TreeSet<>(pools.keySet());
+	}
+	
 	public static String getActiveProfileName() {
+		ensureConfigured();
 		return activeProfileName;
 	}
 	
@@ -112,10 +302,107 @@ public class Database {
 		listenerList.remove(l);
 	}
 	
+	/**
+	 * Adds a listener that is notified about every executed statement
+	 */
+	public static void addStatementListener(StatementListener l) {
+		statementListeners.add(l);
+	}
+	
+	public static void removeStatementListener(StatementListener l) {
+		statementListeners.remove(l);
+	}
+	
+	/**
+	 * Starts collecting {@link StatementMetrics} and publishes them as MBean 
+	 * <code>com.divirad.util.sql:type=StatementMetrics</code>. Calling it again returns the same metrics
+	 * 
+	 * @return the metrics
+	 */
+	public static synchronized StatementMetrics enableMetrics() {
+		if(metrics != null) return metrics;
+		metrics = new StatementMetrics();
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, 
+					new ObjectName("com.divirad.util.sql:type=StatementMetrics"));
+		} catch(JMException e) {
+			log.warn("Can't register statement metrics MBean", e);
+		}
+		addStatementListener(metrics);
+		return metrics;
+	}
+	
+	/**
+	 * Returns the number of connections currently borrowed from the pool of the active profile
+	 */
+	public static int getActiveConnections() {
+		return getActiveConnections(null);
+	}
+	
+	/**
+	 * Returns the number of connections currently borrowed from the pool of a profile
+	 * 
+	 * @param profileName name of the profile, <code>null</code> for the active profile
+	 */
+	public static int getActiveConnections(String profileName) {
+		DBCPDataSource ds = pools.get(profileName == null ? activeProfileName : profileName);
+		return ds == null ? 0 : ds.getNumActive();
+	}
+	
+	/**
+	 * Returns the number of idle connections in the pool of the active profile
+	 */
+	public static int getIdleConnections() {
+		return getIdleConnections(null);
+	}
+	
+	/**
+	 * Returns the number of idle connections in the pool of a profile
+	 * 
+	 * @param profileName name of the profile, <code>null</code> for the active profile
+	 */
+	public static int getIdleConnections(String profileName) {
+		DBCPDataSource ds = pools.get(profileName == null ? activeProfileName : profileName);
+		return ds == null ? 0 : ds.getNumIdle();
+	}
+	
+	/**
+	 * Notifies the statement listeners and logs the statement if it was slow
+	 * 
+	 * @param ds the pool the statement was executed with
+	 * @param start {@link System#nanoTime()} before the connection was requested
+	 * @param borrowed {@link System#nanoTime()} after the connection was received
+	 * @param setParams sets the parameters of the statement for the slow query log, 
+	 *                  <code>null</code> if the statement should not be logged
+	 */
+	private static void statementDone(DBCPDataSource ds, String sql, long start, long borrowed, int rows, boolean failed, 
+			ISetParams setParams) {
+		long elapsed = System.nanoTime() - start;
+		if(setParams != null && ds.slowQueries.isSlow(elapsed)) {
+			SlowQueryLog.Parameters params = SlowQueryLog.record(setParams);
+			ds.slowQueries.log(sql, elapsed, rows, params);
+			// streams and LOBs were consumed by the statement, so it can't be run again
+			if(ds.slowQueries.isExplain(sql) && params.isBindable())
+				ds.explain(sql, params::bind);
+		}
+		if(statementListeners.isEmpty()) return;
+		StatementEvent e = new StatementEvent(sql, elapsed, borrowed - start, rows, failed);
+		for(StatementListener l : statementListeners)
+			l.statementExecuted(e);
+	}
+	
+	/**
+	 * Returns the number of rows of the result of a query
+	 */
+	private static int rowsOf(Object result) {
+		if(result instanceof Collection) return ((Collection<?>) result).size();
+		return result == null ? 0 : 1;
+	}
+	
 	private static void fireProfileChanged(String oldProfileName, String newProfileName) {
 		List<PropertyChangeListener> copy = new ArrayList<>(listenerList);
 		
-		PropertyChangeEvent e = new PropertyChangeEvent(ds, "activeProfile", oldProfileName, newProfileName);
+		PropertyChangeEvent e = new PropertyChangeEvent(Database.class, "activeProfile", oldProfileName, newProfileName);
 		
 		for(PropertyChangeListener l : copy)
 			l.propertyChange(e);
@@ -124,60 +411,281 @@ public class Database {
 	/**
 	 * Reads a database profile set from a properties object
 	 * @param props the properties object
-	 * @param name the name of the database profile
+	 * @param prefix the prefix of the properties of the profile, e.g. <code>db.profilename.</code>
 	 * @return the new profile
 	 */
-	private static DBProfile readProfile(Properties props, String name) {
+	private static DBProfile readProfile(Properties props, String prefix) {
 		DBProfile p = new DBProfile();
-		p.engine = props.getProperty("db." + name + ".engine", "mysql");
-		p.hostname = props.getProperty("db." + name + ".hostname");
-		p.database = props.getProperty("db." + name + ".database");
-	    p.username = props.getProperty("db." + name + ".username", "");
-	    p.password = props.getProperty("db." + name + ".password", "");
-	    p.integratedSecurity = Boolean.parseBoolean(props.getProperty("db." + name + ".useIntegratedSecurity", "false"));
-	    p.params = props.getProperty("db." + name + ".params", "");
+		p.engine = props.getProperty(prefix + "engine", "mysql");
+		p.dialect = EngineSpecifics.getDialect(p.engine);
+		p.hostname = props.getProperty(prefix + "hostname");
+		p.database = props.getProperty(prefix + "database");
+	    p.username = props.getProperty(prefix + "username", "");
+	    p.password = props.getProperty(prefix + "password", "");
+	    p.integratedSecurity = Boolean.parseBoolean(props.getProperty(prefix + "useIntegratedSecurity", "false"));
+	    p.params = props.getProperty(prefix + "params", "");
+	    p.url = props.getProperty(prefix + "url");
+	    p.batchRows = Integer.parseInt(props.getProperty(prefix + "batch.rows", 
+	    		String.valueOf(p.dialect.getMaxBatchRows())));
+	    p.batchParameters = Integer.parseInt(props.getProperty(prefix + "batch.parameters", 
+	    		String.valueOf(p.dialect.getMaxParameters())));
+	    p.batchMultiRow = Boolean.parseBoolean(props.getProperty(prefix + "batch.multiRow", "true"));
+	    p.streamFetchSize = Integer.parseInt(props.getProperty(prefix + "stream.fetchSize", 
+	    		String.valueOf(p.dialect.getStreamingFetchSize())));
+	    p.slowQueryMillis = Long.parseLong(props.getProperty(prefix + "slowQuery.thresholdMillis", "-1"));
+	    p.slowQuerySampleRate = Double.parseDouble(props.getProperty(prefix + "slowQuery.sampleRate", "1"));
+	    p.slowQueryExplain = Boolean.parseBoolean(props.getProperty(prefix + "slowQuery.explain", "false"));
+	    String replicas = props.getProperty(prefix + "replicas", "");
+	    p.replicas = replicas.isEmpty() ? new String[0] : replicas.split(",");
+	    String balancing = props.getProperty(prefix + "replicaBalancing", "roundRobin");
+	    p.replicaLeastActive = balancing.equals("leastActive");
+	    if(!p.replicaLeastActive && !balancing.equals("roundRobin"))
+	    	log.warn("Unknown replicaBalancing " + balancing + ", using roundRobin");
+	    for(String key : props.stringPropertyNames())
+	    	if(key.startsWith(prefix + "pool."))
+	    		p.pool.setProperty(key.substring(prefix.length() + "pool.".length()), props.getProperty(key));
 	    return p;
 	}
 	
 	/**
-	 * Loads a profile from the list <code>dbprofiles</code>
+	 * Returns a profile from the list <code>dbprofiles</code>
 	 * 
-	 * @param id the id in the list
+	 * @param profileName name of the profile, <code>null</code> for the active profile
 	 */
-	public static void loadProfile(String profileName) {
-		try {
-			if(ds != null) ds.shutdown();
-		} catch (SQLException e) {
-			e.printStackTrace();
+	private static DBProfile profile(String profileName) {
+		ensureConfigured();
+		String name = profileName == null ? activeProfileName : profileName;
+		DBProfile p = dbprofiles.get(name);
+		if(p == null) throw new IllegalArgumentException("Unknown database profile " + name);
+		return p;
+	}
+	
+	/**
+	 * Returns the pool of a profile, it is created when the profile is used first
+	 * 
+	 * @param profileName name of the profile, <code>null</code> for the active profile
+	 */
+	private static DBCPDataSource pool(String profileName) {
+		// the configuration sets the active profile
+		ensureConfigured();
+		String name = profileName == null ? activeProfileName : profileName;
+		DBCPDataSource ds = pools.get(name);
+		if(ds != null) return ds;
+		DBProfile p = profile(name);
+		return pools.computeIfAbsent(name, n -> new DBCPDataSource(p));
+	}
+	
+	/**
+	 * Returns the pool a query of a profile runs on. That is one of the replicas of the profile, if it has replicas 
+	 * and the current thread has no transaction on it, otherwise the pool of the profile itself
+	 * 
+	 * @param profileName name of the profile, <code>null</code> for the active profile
+	 */
+	private static DBCPDataSource readPool(String profileName) {
+		DBCPDataSource primary = pool(profileName);
+		if(primary.replicas.length == 0 || primary.isTransactionActive()) return primary;
+		DBCPDataSource[] pinned = pinnedReplica.get();
+		if(pinned != null && pinned[0] == primary) return pinned[1];
+		return replica(primary);
+	}
+	
+	/**
+	 * Chooses the replica of a profile with replicas that runs the next query
+	 */
+	private static DBCPDataSource replica(DBCPDataSource primary) {
+		String[] replicas = primary.replicas;
+		if(primary.replicaLeastActive) {
+			DBCPDataSource best = null;
+			for(String replica : replicas) {
+				DBCPDataSource ds = pool(replica);
+				if(best == null || ds.getNumActive() < best.getNumActive()) best = ds;
+			}
+			return best;
 		}
+		return pool(replicas[Math.floorMod(primary.nextReplica.getAndIncrement(), replicas.length)]);
+	}
+	
+	/**
+	 * Makes a profile from the list <code>dbprofiles</code> the active profile, which is used by all operations 
+	 * without a profile name. The pool of the previously active profile stays open, so operations still running on it
+	 * are not interrupted, see {@link #shutdown(String)}
+	 * 
+	 * @param profileName name of the profile
+	 */
+	public static void loadProfile(String profileName) {
+		pool(profileName);
 		String oldProfileName = activeProfileName;
 		activeProfileName = profileName;
-		ds = new DBCPDataSource(dbprofiles.get(profileName));
 		fireProfileChanged(oldProfileName, activeProfileName);
 	}
 	
+	/**
+	 * Opens a transaction for the current thread. All statements executed by this thread use the connection of the 
+	 * transaction until {@link #commit()} or {@link #rollback()} is called, other threads are not affected and can 
+	 * open their own transactions in parallel
+	 */
 	public static void openTransaction() {
-		ds.openTransaction();
+		openTransaction(null);
+	}
+	
+	/**
+	 * Opens a transaction for the current thread on the pool of a profile, see {@link #openTransaction()}.
+	 * Transactions of different profiles are independent of each other
+	 * 
+	 * @param profileName name of the profile, <code>null</code> for the active profile
+	 */
+	public static void openTransaction(String profileName) {
+		pool(profileName).openTransaction();
+	}
+	
+	/**
+	 * Returns if the current thread has opened a transaction
+	 */
+	public static boolean isTransactionActive() {
+		return isTransactionActive(null);
+	}
+	
+	/**
+	 * Returns if the current thread has opened a transaction on the pool of a profile
+	 */
+	public static boolean isTransactionActive(String profileName) {
+		return pool(profileName).isTransactionActive();
 	}
 	
 	public static void commit() {
-		ds.commitTransaction();
+		commit(null);
+	}
+	
+	public static void commit(String profileName) {
+		pool(profileName).commitTransaction();
+	}
+	
+	/**
+	 * Commits the transaction of the current thread like {@link #commit(String)}, used by the Daos for the 
+	 * transactions of their own writes
+	 * 
+	 * @return false if the commit failed and the transaction was rolled back
+	 */
+	static boolean commitChecked(String profileName) {
+		return pool(profileName).commitTransaction();
 	}
 	
 	public static void rollback() {
-		ds.rollbackTransaction();
+		rollback(null);
+	}
+	
+	public static void rollback(String profileName) {
+		pool(profileName).rollbackTransaction();
 	}
 	
+	/**
+	 * Closes the pools of all profiles. A profile used again afterwards gets a new pool
+	 */
 	public static void shutdown() throws SQLException {
-		ds.shutdown();
+		for(String profileName : pools.keySet())
+			shutdown(profileName);
+	}
+	
+	/**
+	 * Closes the pool of a profile. The profile gets a new pool when it is used again
+	 * 
+	 * @param profileName name of the profile, <code>null</code> for the active profile
+	 */
+	public static void shutdown(String profileName) throws SQLException {
+		DBCPDataSource ds = pools.remove(profileName == null ? activeProfileName : profileName);
+		if(ds != null) ds.shutdown();
+	}
+	
+	/**
+	 * Returns the dialect of the active profile, see {@link EngineSpecifics#getDialect(String)}
+	 */
+	public static Dialect getDialect() {
+		return getDialect(null);
+	}
+	
+	/**
+	 * Returns the dialect of a profile
+	 * 
+	 * @param profileName name of the profile, <code>null</code> for the active profile
+	 */
+	public static Dialect getDialect(String profileName) {
+		return profile(profileName).dialect;
 	}
 	
 	public static String getLeadingIdentifierSign() {
-		return EngineSpecifics.getLeadingIdentifierSign(dbprofiles.get(activeProfileName).engine);
+		return getLeadingIdentifierSign(null);
+	}
+	
+	public static String getLeadingIdentifierSign(String profileName) {
+		return profile(profileName).dialect.getLeadingIdentifierSign();
 	}
 	
 	public static String getTrailingIdentifierSign() {
-		return EngineSpecifics.getTrailingIdentifierSign(dbprofiles.get(activeProfileName).engine);
+		return getTrailingIdentifierSign(null);
+	}
+	
+	public static String getTrailingIdentifierSign(String profileName) {
+		return profile(profileName).dialect.getTrailingIdentifierSign();
+	}
+	
+	/**
+	 * Returns a condition matching one of several keys for the engine of the active profile, 
+	 * see {@link Dialect#getKeyListPredicate(String[], int)}
+	 */
+	public static String getKeyListPredicate(String[] columns, int rows) {
+		return getKeyListPredicate(null, columns, rows);
+	}
+	
+	/**
+	 * Returns a condition matching one of several keys for the engine of a profile
+	 * 
+	 * @param profileName name of the profile, <code>null</code> for the active profile
+	 */
+	public static String getKeyListPredicate(String profileName, String[] columns, int rows) {
+		return profile(profileName).dialect.getKeyListPredicate(columns, rows);
+	}
+	
+	/**
+	 * Returns a statement inserting or updating rows for the engine of a profile, 
+	 * see {@link Dialect#getUpsertStatement(String, String[], String[], int)}
+	 * 
+	 * @param profileName name of the profile, <code>null</code> for the active profile
+	 */
+	public static String getUpsertStatement(String profileName, String table, String[] columns, String[] keys, int rows) {
+		return profile(profileName).dialect.getUpsertStatement(table, columns, keys, rows);
+	}
+	
+	/**
+	 * Returns how many rows are written by one statement of a batched write of the active profile
+	 * 
+	 * @param parametersPerRow number of parameters of one row
+	 * @return rows per statement, limited by <code>batch.rows</code> and <code>batch.parameters</code>
+	 */
+	public static int getBatchRows(int parametersPerRow) {
+		return getBatchRows(null, parametersPerRow);
+	}
+	
+	/**
+	 * Returns how many rows are written by one statement of a batched write of a profile
+	 * 
+	 * @param profileName name of the profile, <code>null</code> for the active profile
+	 */
+	public static int getBatchRows(String profileName, int parametersPerRow) {
+		DBProfile p = profile(profileName);
+		if(!p.batchMultiRow || parametersPerRow == 0) return p.batchRows;
+		return Math.max(1, Math.min(p.batchRows, p.batchParameters / parametersPerRow));
+	}
+	
+	/**
+	 * Returns if batched writes of the active profile use multi row statements 
+	 * or single row statements sent with {@link PreparedStatement#addBatch()}
+	 */
+	public static boolean isMultiRowBatch() {
+		return isMultiRowBatch(null);
+	}
+	
+	public static boolean isMultiRowBatch(String profileName) {
+		return profile(profileName).batchMultiRow;
 	}
 	
 	
@@ -187,6 +695,19 @@ public class Database {
     public interface IUseResultSet <T> {
         T run(ResultSet ps) throws SQLException;
     }
+    public interface ISetBatchParams {
+        void run(PreparedStatement ps, int batch) throws SQLException;
+    }
+    /**
+     * Reads generated values, see {@link Database#executeBatch(String, String, String[], int, int, ISetBatchParams, IUseGeneratedKeys)}
+     */
+    public interface IUseGeneratedKeys {
+        /**
+         * @param keys the generated values of the batches starting with <code>firstBatch</code>
+         * @return number of rows read
+         */
+        int run(ResultSet keys, int firstBatch) throws SQLException;
+    }
 
     /**
      * Executes a sql query with no parameter
@@ -208,28 +729,169 @@ public class Database {
      * @return the return value of useResultSet
      */
     public static <T> T query(String sql, ISetParams setParams, IUseResultSet<T> useResultSet) {
+    	return query(null, sql, setParams, useResultSet);
+    }
+
+    /**
+     * Executes a sql query on the pool of a profile, see {@link #query(String, ISetParams, IUseResultSet)}.
+     * Outside of a transaction, the query runs on a replica of the profile if it has replicas
+     * @param profileName name of the profile, <code>null</code> for the active profile
+     */
+    public static <T> T query(String profileName, String sql, ISetParams setParams, IUseResultSet<T> useResultSet) {
+    	return runQuery(readPool(profileName), sql, setParams, useResultSet);
+    }
+
+    private static <T> T runQuery(DBCPDataSource ds, String sql, ISetParams setParams, IUseResultSet<T> useResultSet) {
+    	long start = System.nanoTime();
+    	long borrowed = start;
+    	T result = null;
+    	boolean failed = false;
     	Connection con = null;
     	try {
     		con = ds.getConnection();
+    		borrowed = System.nanoTime();
     		try(PreparedStatement ps = con.prepareStatement(sql)) {
     			log.debug("Statement prepared");
     			setParams.run(ps);
     			try(ResultSet rs = ps.executeQuery()) {
     				log.debug("Execute");
-    				return useResultSet.run(rs);
+    				result = useResultSet.run(rs);
+    				return result;
     			}
     		}
     	} catch(SQLException e) {
+    		failed = true;
     		e.printStackTrace();
     		return null;
     	} finally {
+    		release(con);
+    		statementDone(ds, sql, start, borrowed, rowsOf(result), failed, setParams);
+    	}
+    }
+
+    /**
+     * Executes a sql query and maps the rows lazily while the returned stream is consumed.
+     * The connection, statement and ResultSet stay open until the stream is closed, so the stream must be closed, 
+     * e.g. with try-with-resources. Rows are fetched with the <code>stream.fetchSize</code> of the active profile, so 
+     * the memory used doesn't depend on the number of rows.
+     * While a MySQL result is streamed, no other statement can be executed on the same connection 
+     * (e.g. inside a transaction). On PostgreSQL, a stream outside of a transaction turns auto commit off until it is 
+     * closed, as the driver ignores the fetch size otherwise.
+     * @param sql prepared sql string
+     * @param setParams function to set the parameters of the PreparedStatement
+     * @param mapRow function creating the element of the current row of the ResultSet
+     * @param <T> element Type
+     * @return stream of the mapped rows, empty if the query fails
+     */
+    public static <T> Stream<T> queryStream(String sql, ISetParams setParams, IUseResultSet<T> mapRow) {
+    	return queryStream(null, sql, setParams, mapRow);
+    }
+
+    /**
+     * Executes a sql query on the pool of a profile and maps the rows lazily, 
+     * see {@link #queryStream(String, ISetParams, IUseResultSet)}. 
+     * Outside of a transaction, the query runs on a replica of the profile if it has replicas
+     * @param profileName name of the profile, <code>null</code> for the active profile
+     */
+    public static <T> Stream<T> queryStream(String profileName, String sql, ISetParams setParams, IUseResultSet<T> mapRow) {
+    	DBCPDataSource ds = readPool(profileName);
+    	long start = System.nanoTime();
+    	long borrowed = start;
+    	Connection con = null;
+    	PreparedStatement ps = null;
+    	ResultSet rs = null;
+    	boolean ownTransaction = false;
+    	try {
+    		con = ds.getConnection();
+    		borrowed = System.nanoTime();
+    		if(ds.dialect.isStreamingInTransaction() && con.getAutoCommit()) {
+    			con.setAutoCommit(false);
+    			ownTransaction = true;
+    		}
+    		ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    		ps.setFetchSize(ds.streamFetchSize);
+    		log.debug("Statement prepared");
+    		setParams.run(ps);
+    		rs = ps.executeQuery();
+    		log.debug("Execute");
+    	} catch(SQLException e) {
+    		e.printStackTrace();
+    		closeStream(ds, con, ps, rs, ownTransaction);
+    		statementDone(ds, sql, start, borrowed, 0, true, setParams);
+    		return Stream.empty();
+    	}
+    	long streamBorrowed = borrowed;
+    	int[] rowCount = new int[1];
+    	Connection streamCon = con;
+    	PreparedStatement streamPs = ps;
+    	ResultSet streamRs = rs;
+    	boolean streamTransaction = ownTransaction;
+    	Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED) {
+    		@Override
+    		public boolean tryAdvance(Consumer<? super T> action) {
+    			try {
+    				if(!streamRs.next()) return false;
+    				action.accept(mapRow.run(streamRs));
+    				rowCount[0]++;
+    				return true;
+    			} catch(SQLException e) {
+    				throw new IllegalStateException(e);
+    			}
+    		}
+    	};
+    	return StreamSupport.stream(rows, false).onClose(() -> {
+    		closeStream(ds, streamCon, streamPs, streamRs, streamTransaction);
+    		// the time includes the consumer of the stream, so streams are not checked by the slow query log
+    		statementDone(ds, sql, start, streamBorrowed, rowCount[0], false, null);
+    	});
+    }
+
+    /**
+     * Executes a sql query with no parameter and maps the rows lazily, see {@link #queryStream(String, ISetParams, IUseResultSet)}
+     */
+    public static <T> Stream<T> queryStream(String sql, IUseResultSet<T> mapRow) {
+    	return queryStream(sql, ps -> {}, mapRow);
+    }
+
+    /**
+     * Closes a stream and returns its connection
+     * 
+     * @param ownTransaction if auto commit was turned off for the stream, see {@link Dialect#isStreamingInTransaction()}
+     */
+    private static void closeStream(DBCPDataSource ds, Connection con, PreparedStatement ps, ResultSet rs, 
+    		boolean ownTransaction) {
+    	try {
+    		if(rs != null) rs.close();
+    		if(ps != null) ps.close();
+    	} catch(SQLException e) {
+    		e.printStackTrace();
+    	}
+    	if(ownTransaction) {
     		try {
-    			if(con.getAutoCommit())
-    				con.close();
+    			con.commit();
+    			con.setAutoCommit(true);
     		} catch(SQLException e) {
+    			// a connection left without auto commit must not get back into the pool
     			e.printStackTrace();
+    			ds.invalidate(con);
+    			return;
     		}
     	}
+    	release(con);
+    }
+
+    /**
+     * Returns the connection of a statement to the pool, unless it is the connection of the transaction of the thread. 
+     * Does nothing for <code>null</code>, i.e. if no connection could be borrowed
+     */
+    private static void release(Connection con) {
+    	if(con == null) return;
+    	try {
+    		if(con.getAutoCommit())
+    			con.close();
+    	} catch(SQLException e) {
+    		e.printStackTrace();
+    	}
     }
 
     /**
@@ -250,10 +912,22 @@ public class Database {
      * @return count of rows affected
      */
     public static int execute(String sql, ISetParams setParams) {
+    	return execute(null, sql, setParams);
+    }
+
+    /**
+     * Executes a sql command on the pool of a profile, see {@link #execute(String, ISetParams)}
+     * @param profileName name of the profile, <code>null</code> for the active profile
+     */
+    public static int execute(String profileName, String sql, ISetParams setParams) {
+    	DBCPDataSource ds = pool(profileName);
+    	long start = System.nanoTime();
+    	long borrowed = start;
     	int updateCount = -1;
     	Connection con = null;
     	try {
     		con = ds.getConnection();
+    		borrowed = System.nanoTime();
     		try(PreparedStatement ps = con.prepareStatement(sql)) {
     			log.debug("Statement prepared");
     			setParams.run(ps);
@@ -265,115 +939,702 @@ public class Database {
     	} catch(SQLException e) {
     		e.printStackTrace();
     	} finally {
-    		try {
-    			if(con.getAutoCommit())
-    				con.close();
-    		} catch(SQLException e) {
-    			e.printStackTrace();
+    		release(con);
+    		statementDone(ds, sql, start, borrowed, updateCount, updateCount == -1, setParams);
+    	}
+    	return updateCount;
+    }
+
+    /**
+     * Writes rows with the bulk loader of the engine of a profile, see {@link Dialect#bulkLoad(Connection, String, String[], Iterator)}
+     * 
+     * @param profileName name of the profile, <code>null</code> for the active profile
+     * @param table the table, with identifier signs
+     * @param columns the loaded columns
+     * @param rows the values of the rows, in the order of <code>columns</code>
+     * @return number of loaded rows, -1 if an error occurred
+     * @throws UnsupportedOperationException if there is no loader for the engine or its driver, before any row is read. 
+     *         Check {@link Dialect#supportsBulkLoad()} first
+     */
+    public static long bulkLoad(String profileName, String table, String[] columns, Iterator<Object[]> rows) {
+    	DBCPDataSource ds = pool(profileName);
+    	if(!ds.dialect.supportsBulkLoad())
+    		throw new UnsupportedOperationException("No bulk loader for engine " + ds.dialect.getEngine());
+    	long start = System.nanoTime();
+    	long borrowed = start;
+    	long loaded = -1;
+    	boolean unsupported = false;
+    	Connection con = null;
+    	try {
+    		con = ds.getConnection();
+    		borrowed = System.nanoTime();
+    		loaded = ds.dialect.bulkLoad(con, table, columns, rows);
+    		log.debug("Bulk loaded");
+    	} catch(SQLException e) {
+    		e.printStackTrace();
+    	} catch(UnsupportedOperationException e) {
+    		unsupported = true;
+    		throw e;
+    	} finally {
+    		release(con);
+    		// a missing loader isn't a failed statement
+    		if(!unsupported)
+    			statementDone(ds, "bulk load " + table, start, borrowed, (int) Math.min(loaded, Integer.MAX_VALUE), loaded == -1, null);
+    	}
+    	return loaded;
+    }
+
+    /**
+     * Executes a sql command several times with one PreparedStatement using {@link PreparedStatement#addBatch()}
+     * @param sql prepared sql string
+     * @param count number of times the command is executed
+     * @param flushSize number of batches sent to the database with one {@link PreparedStatement#executeBatch()}
+     * @param setParams function to set the parameters of the PreparedStatement for the batch with the given index
+     * 
+     * @return count of rows affected, -1 if an error occurred
+     */
+    public static int executeBatch(String sql, int count, int flushSize, ISetBatchParams setParams) {
+    	return executeBatch(null, sql, count, flushSize, setParams);
+    }
+
+    /**
+     * Executes a sql command several times on the pool of a profile, 
+     * see {@link #executeBatch(String, int, int, ISetBatchParams)}
+     * @param profileName name of the profile, <code>null</code> for the active profile
+     */
+    public static int executeBatch(String profileName, String sql, int count, int flushSize, ISetBatchParams setParams) {
+    	DBCPDataSource ds = pool(profileName);
+    	long start = System.nanoTime();
+    	long borrowed = start;
+    	int updateCount = 0;
+    	Connection con = null;
+    	try {
+    		con = ds.getConnection();
+    		borrowed = System.nanoTime();
+    		try(PreparedStatement ps = con.prepareStatement(sql)) {
+    			log.debug("Statement prepared");
+    			for(int i = 0; i < count; i++) {
+    				setParams.run(ps, i);
+    				ps.addBatch();
+    				if((i + 1) % flushSize == 0 || i == count - 1) {
+    					for(int rows : ps.executeBatch())
+    						if(rows > 0) updateCount += rows;
+    					log.debug("Batch executed");
+    				}
+    			}
     		}
+    	} catch(SQLException e) {
+    		e.printStackTrace();
+    		updateCount = -1;
+    	} finally {
+    		release(con);
+    		// the first row stands for the whole batch in the slow query log
+    		statementDone(ds, sql, start, borrowed, updateCount, updateCount == -1, ps -> setParams.run(ps, 0));
     	}
     	return updateCount;
     }
 
+    /**
+     * Executes an insert several times like {@link #executeBatch(String, String, int, int, ISetBatchParams)} and reads 
+     * the values generated by the database. Uses {@link PreparedStatement#getGeneratedKeys()} after each flush, or the 
+     * statement of {@link Dialect#getGeneratedKeysStatement(String, String[])} (e.g. <code>OUTPUT INSERTED</code> on 
+     * SQL Server), which can't be batched and is executed once per batch instead. So on SQL Server the rows should be 
+     * written by multi row statements with <code>flushSize</code> 1
+     * 
+     * @param profileName name of the profile, <code>null</code> for the active profile
+     * @param sql the insert
+     * @param keyColumns the generated columns
+     * @param useKeys reads the generated values of the flushed batches
+     * @return count of rows affected, -1 if an error occurred
+     */
+    public static int executeBatch(String profileName, String sql, String[] keyColumns, int count, int flushSize, 
+    		ISetBatchParams setParams, IUseGeneratedKeys useKeys) {
+    	DBCPDataSource ds = pool(profileName);
+    	String returning = ds.dialect.getGeneratedKeysStatement(sql, keyColumns);
+    	long start = System.nanoTime();
+    	long borrowed = start;
+    	int updateCount = 0;
+    	Connection con = null;
+    	try {
+    		con = ds.getConnection();
+    		borrowed = System.nanoTime();
+    		try(PreparedStatement ps = returning != null ? con.prepareStatement(returning) : con.prepareStatement(sql, keyColumns)) {
+    			log.debug("Statement prepared");
+    			int first = 0;
+    			for(int i = 0; i < count; i++) {
+    				setParams.run(ps, i);
+    				if(returning != null) {
+    					try(ResultSet rs = ps.executeQuery()) {
+    						updateCount += useKeys.run(rs, i);
+    					}
+    					continue;
+    				}
+    				ps.addBatch();
+    				if((i + 1) % flushSize == 0 || i == count - 1) {
+    					for(int rows : ps.executeBatch())
+    						if(rows > 0) updateCount += rows;
+    					try(ResultSet rs = ps.getGeneratedKeys()) {
+    						useKeys.run(rs, first);
+    					}
+    					first = i + 1;
+    					log.debug("Batch executed");
+    				}
+    			}
+    		}
+    	} catch(SQLException e) {
+    		e.printStackTrace();
+    		updateCount = -1;
+    	} finally {
+    		release(con);
+    		statementDone(ds, returning != null ? returning : sql, start, borrowed, updateCount, updateCount == -1, 
+    				ps -> setParams.run(ps, 0));
+    	}
+    	return updateCount;
+    }
+
+    /**
+     * Creates a virtual thread per task executor on Java 21+. Returns <code>null</code> otherwise, then every pool 
+     * runs the operations on its own fixed threads
+     */
+    private static Executor createAsyncExecutor() {
+    	try {
+    		Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    		return (Executor) m.invoke(null);
+    	} catch(ReflectiveOperationException e) {
+    		return null;
+    	}
+    }
+    
+    /**
+     * Sets the executor running the asynchronous operations
+     * 
+     * @param executor the executor, <code>null</code> to run them on fixed threads of each pool, one per permit
+     */
+    public static void setAsyncExecutor(Executor executor) {
+    	asyncExecutor = executor;
+    }
+    
+    /**
+     * Runs a database operation asynchronously. At most one operation less than the pool has connections runs at the
+     * same time, the others wait for a free slot without occupying the pool. So an operation holding a connection can
+     * always get a second one, e.g. a stream loading join fields.
+     * The operation runs on another thread, so it is not part of a transaction opened by the calling thread. 
+     * An asynchronous operation started by an asynchronous operation runs on the thread of its caller, 
+     * the returned future is already completed then.
+     * @param operation the operation, e.g. <code>() -> dao.select(key)</code>
+     * @param <T> return Type
+     * @return future completed with the result of the operation
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> operation) {
+    	return supplyAsync(null, operation);
+    }
+    
+    /**
+     * Runs a database operation asynchronously, limited by the number of connections of the pool of a profile, 
+     * see {@link #supplyAsync(Supplier)}
+     * @param profileName name of the profile used by the operation, <code>null</code> for the active profile
+     */
+    public static <T> CompletableFuture<T> supplyAsync(String profileName, Supplier<T> operation) {
+    	return submitAsync(pool(profileName), null, operation);
+    }
+    
+    /**
+     * Runs a reading database operation asynchronously, see {@link #supplyAsync(String, Supplier)}. If the profile has
+     * replicas, the replica is chosen now: the queries of the operation run on it and the operation is limited by its
+     * number of connections
+     * @param profileName name of the profile used by the operation, <code>null</code> for the active profile
+     */
+    public static <T> CompletableFuture<T> supplyReadAsync(String profileName, Supplier<T> operation) {
+    	DBCPDataSource primary = pool(profileName);
+    	if(primary.replicas.length == 0) return submitAsync(primary, null, operation);
+    	DBCPDataSource replica = replica(primary);
+    	return submitAsync(replica, new DBCPDataSource[] { primary, replica }, operation);
+    }
+    
+    /**
+     * Runs an operation on the executor of a pool with a permit of the pool
+     * 
+     * @param pin the primary pool and the replica the queries of the operation run on, <code>null</code> for no replica
+     */
+    private static <T> CompletableFuture<T> submitAsync(DBCPDataSource ds, DBCPDataSource[] pin, Supplier<T> operation) {
+    	if(runningAsync.get() != null)
+    		return runNested(pin, operation);
+    	Semaphore permits = ds.asyncPermits;
+    	return CompletableFuture.supplyAsync(() -> {
+    		permits.acquireUninterruptibly();
+    		runningAsync.set(Boolean.TRUE);
+    		if(pin != null) pinnedReplica.set(pin);
+    		try {
+    			return operation.get();
+    		} finally {
+    			if(pin != null) pinnedReplica.remove();
+    			runningAsync.remove();
+    			permits.release();
+    		}
+    	}, ds.executor());
+    }
+    
+    /**
+     * Runs an asynchronous operation started by an asynchronous operation on the current thread. Waiting for a permit
+     * or a thread of the pool could wait forever, if the callers hold all of them
+     */
+    private static <T> CompletableFuture<T> runNested(DBCPDataSource[] pin, Supplier<T> operation) {
+    	DBCPDataSource[] outer = pinnedReplica.get();
+    	if(pin != null) pinnedReplica.set(pin);
+    	try {
+    		return CompletableFuture.completedFuture(operation.get());
+    	} catch(RuntimeException e) {
+    		return CompletableFuture.failedFuture(e);
+    	} finally {
+    		if(pin != null) {
+    			if(outer == null) pinnedReplica.remove();
+    			else pinnedReplica.set(outer);
+    		}
+    	}
+    }
+    
+    /**
+     * Runs a database operation without result asynchronously, see {@link #supplyAsync(Supplier)}
+     */
+    public static CompletableFuture<Void> runAsync(Runnable operation) {
+    	return runAsync(null, operation);
+    }
+    
+    /**
+     * Runs a database operation without result asynchronously, see {@link #supplyAsync(String, Supplier)}
+     */
+    public static CompletableFuture<Void> runAsync(String profileName, Runnable operation) {
+    	return supplyAsync(profileName, () -> {
+    		operation.run();
+    		return null;
+    	});
+    }
+    
+    /**
+     * Executes a sql query asynchronously, see {@link #query(String, ISetParams, IUseResultSet)} and {@link #supplyAsync(Supplier)}
+     */
+    public static <T> CompletableFuture<T> queryAsync(String sql, ISetParams setParams, IUseResultSet<T> useResultSet) {
+    	return supplyReadAsync(null, () -> query(sql, setParams, useResultSet));
+    }
+    
+    /**
+     * Executes a sql query with no parameter asynchronously
+     */
+    public static <T> CompletableFuture<T> queryAsync(String sql, IUseResultSet<T> useResultSet) {
+    	return queryAsync(sql, ps -> {}, useResultSet);
+    }
+    
+    /**
+     * Executes a sql command asynchronously, see {@link #execute(String, ISetParams)} and {@link #supplyAsync(Supplier)}
+     */
+    public static CompletableFuture<Integer> executeAsync(String sql, ISetParams setParams) {
+    	return supplyAsync(() -> execute(sql, setParams));
+    }
+    
+    /**
+     * Executes a sql command with no parameter asynchronously
+     */
+    public static CompletableFuture<Integer> executeAsync(String sql) {
+    	return executeAsync(sql, ps -> {});
+    }
+
+    /**
+     * Registers statements to be prepared by {@link #warmUp(String)}. The Daos register their statements themselves
+     * 
+     * @param profileName name of the profile the statements are used with, 
+     *                    <code>null</code> for the profile active at the time of the warm up
+     */
+    public static void registerStatements(String profileName, String... sql) {
+    	Set<String> statements = warmUpStatements.computeIfAbsent(profileName == null ? "" : profileName, 
+    			k -> ConcurrentHashMap.newKeySet());
+    	for(String s : sql)
+    		if(s != null) statements.add(s);
+    }
+    
+    /**
+     * Warms up the pool of the active profile, see {@link #warmUp(String)}
+     */
+    public static void warmUp() {
+    	warmUp(null);
+    }
+    
+    /**
+     * Opens the <code>pool.minIdle</code> connections of the pool of a profile and of its replicas in parallel, 
+     * validates them and prepares the registered statements on each of them (see {@link #registerStatements}), so 
+     * they are in the statement pool of every connection (<code>pool.poolPreparedStatements</code>) before the first
+     * request. Call it after the Daos are created. Blocks until all connections are warmed up
+     * 
+     * @param profileName name of the profile, <code>null</code> for the active profile
+     */
+    public static void warmUp(String profileName) {
+    	ensureConfigured();
+    	String name = profileName == null ? activeProfileName : profileName;
+    	Set<String> statements = new HashSet<>(warmUpStatements.getOrDefault(name, Set.of()));
+    	if(name.equals(activeProfileName))
+    		statements.addAll(warmUpStatements.getOrDefault("", Set.of()));
+    	DBCPDataSource primary = pool(name);
+    	List<CompletableFuture<Integer>> pools = new ArrayList<>();
+    	pools.add(primary.warmUp(statements));
+    	for(String replica : primary.replicas)
+    		pools.add(pool(replica).warmUp(statements));
+    	int connections = 0;
+    	for(CompletableFuture<Integer> f : pools)
+    		connections += f.join();
+    	log.info("Warmed up {} connections of profile {} with {} statements", connections, name, statements.size());
+    }
+
+    /**
+     * @deprecated the id is read on a connection of the pool, which isn't necessarily the connection of the insert. 
+     *             The Daos set the generated values of inserted rows themselves, 
+     *             see {@link #executeBatch(String, String, String[], int, int, ISetBatchParams, IUseGeneratedKeys)}
+     */
+    @Deprecated
     public static int getLastID() {
-        return query("SELECT LAST_INSERT_ID();", rs -> rs != null && rs.next() ? rs.getInt(1) : null);
+        return getLastID(null);
+    }
+    
+    /**
+     * @deprecated see {@link #getLastID()}
+     */
+    @Deprecated
+    public static int getLastID(String profileName) {
+        // the id only exists on the connection that inserted the row, never on a replica
+        return runQuery(pool(profileName), profile(profileName).dialect.getLastIdStatement(), ps -> {}, rs -> rs != null && rs.next() ? rs.getInt(1) : null);
     }
     
     private static class DBCPDataSource {
     	
-    	private BasicDataSource ds;
+    	private DataSource ds;
+    	/**
+    	 * The pool if it is our own, <code>null</code> if the application passed its own pool
+    	 */
+    	private BasicDataSource basic;
+    	private final int maxTotal;
+    	private final int minIdle;
+    	
+    	/**
+    	 * Connection of the transaction opened by the current thread. Each thread has its own transaction on its own 
+    	 * pooled connection, so threads never see each others transactions
+    	 */
+    	private final ThreadLocal<Connection> activeTransaction = new ThreadLocal<>(); 
+    	
+    	private static final int WARM_UP_VALIDATION_SECONDS = 5;
+    	
+    	private final Dialect dialect;
+    	private final int streamFetchSize;
+    	private final SlowQueryLog slowQueries;
+    	/**
+    	 * Limits the running asynchronous operations to one less than the maximum number of connections of the pool, 
+    	 * so waiting operations wait here and not inside the pool, and a running operation can borrow a second connection
+    	 */
+    	private final Semaphore asyncPermits;
+    	/**
+    	 * Threads of the asynchronous operations if no executor is set, see {@link Database#setAsyncExecutor(Executor)}. Created on first use
+    	 */
+    	private ExecutorService asyncThreads;
+    	private static final int DEFAULT_ASYNC_THREADS = 8;
     	
-    	private Connection activeTransaction; 
+    	private final String[] replicas;
+    	private final boolean replicaLeastActive;
+    	/**
+    	 * Counter of the round robin replica balancing
+    	 */
+    	private final AtomicInteger nextReplica = new AtomicInteger();
     	
     	public DBCPDataSource(DBProfile p) {
-    		ds = new BasicDataSource();
-    		ds.setUrl(getConnectionString(p.engine, p.hostname, p.database, p.integratedSecurity, p.params));
-    		if(!p.integratedSecurity) {
-    			ds.setUsername(p.username);
-    			ds.setPassword(p.password);
+    		dialect = p.dialect;
+    		streamFetchSize = p.streamFetchSize;
+    		replicas = p.replicas;
+    		replicaLeastActive = p.replicaLeastActive;
+    		slowQueries = new SlowQueryLog(p.slowQueryMillis, p.slowQuerySampleRate, p.slowQueryExplain);
+    		if(p.dataSource != null) {
+    			ds = p.dataSource;
+    			maxTotal = Integer.parseInt(p.pool.getProperty("maxTotal", "8"));
+    			minIdle = Integer.parseInt(p.pool.getProperty("minIdle", "5"));
+    		} else {
+    			basic = new BasicDataSource();
+    			basic.setUrl(p.url != null ? p.url : dialect.getConnectionString(p.hostname, p.database, p.integratedSecurity, p.params));
+    			if(!p.integratedSecurity) {
+    				basic.setUsername(p.username);
+    				basic.setPassword(p.password);
+    			}
+    			configurePool(p.pool);
+    			ds = basic;
+    			maxTotal = basic.getMaxTotal();
+    			minIdle = basic.getMinIdle();
+    		}
+    		asyncPermits = new Semaphore(asyncSlots() < 0 ? Integer.MAX_VALUE : asyncSlots());
+    	}
+    	
+    	/**
+    	 * Applies the <code>pool.</code> properties of a profile
+    	 */
+    	private void configurePool(Properties pool) {
+    		basic.setMinIdle(Integer.parseInt(pool.getProperty("minIdle", "5")));
+    		basic.setMaxIdle(Integer.parseInt(pool.getProperty("maxIdle", "10")));
+    		// every connection keeps its prepared statements, so the Dao statements are prepared only once per connection
+    		basic.setPoolPreparedStatements(Boolean.parseBoolean(pool.getProperty("poolPreparedStatements", "true")));
+    		basic.setMaxOpenPreparedStatements(Integer.parseInt(pool.getProperty("maxOpenPreparedStatements", "100")));
+    		for(String key : pool.stringPropertyNames()) {
+    			String value = pool.getProperty(key);
+    			switch(key) {
+    			case "minIdle": case "maxIdle": case "poolPreparedStatements": case "maxOpenPreparedStatements":
+    				break;
+    			case "initialSize": basic.setInitialSize(Integer.parseInt(value)); break;
+    			case "maxTotal": basic.setMaxTotal(Integer.parseInt(value)); break;
+    			case "maxWaitMillis": basic.setMaxWait(Duration.ofMillis(Long.parseLong(value))); break;
+    			case "validationQuery": basic.setValidationQuery(value); break;
+    			case "validationQueryTimeoutSeconds": basic.setValidationQueryTimeout(Duration.ofSeconds(Long.parseLong(value))); break;
+    			case "testOnBorrow": basic.setTestOnBorrow(Boolean.parseBoolean(value)); break;
+    			case "testOnReturn": basic.setTestOnReturn(Boolean.parseBoolean(value)); break;
+    			case "testWhileIdle": basic.setTestWhileIdle(Boolean.parseBoolean(value)); break;
+    			case "timeBetweenEvictionRunsMillis": basic.setDurationBetweenEvictionRuns(Duration.ofMillis(Long.parseLong(value))); break;
+    			case "minEvictableIdleTimeMillis": basic.setMinEvictableIdle(Duration.ofMillis(Long.parseLong(value))); break;
+    			case "numTestsPerEvictionRun": basic.setNumTestsPerEvictionRun(Integer.parseInt(value)); break;
+    			default: log.warn("Unknown pool property " + key);
+    			}
+    		}
+    	}
+    	
+    	public int getMaxTotal() {
+    		return maxTotal;
+    	}
+    	
+    	/**
+    	 * Returns the number of borrowed connections, -1 if unknown for a pool of the application
+    	 */
+    	public int getNumActive() {
+    		return basic == null ? -1 : basic.getNumActive();
+    	}
+    	
+    	/**
+    	 * Returns the number of idle connections, -1 if unknown for a pool of the application
+    	 */
+    	public int getNumIdle() {
+    		return basic == null ? -1 : basic.getNumIdle();
+    	}
+    	
+    	/**
+    	 * Removes a connection from the pool instead of returning it. A pool of the application gets it back closed,
+    	 * as there is no general way to remove it
+    	 */
+    	private void invalidate(Connection con) {
+    		try {
+    			if(basic != null) basic.invalidateConnection(con);
+    			else con.close();
+    		} catch(IllegalStateException | SQLException e) {
+    			e.printStackTrace();
     		}
-    		ds.setMinIdle(5);
-    		ds.setMaxIdle(10);
-    		ds.setMaxOpenPreparedStatements(100);
-    	}    	
+    	}
     	
     	public Connection getConnection() throws SQLException {
-    		if(activeTransaction != null) {
+    		Connection transaction = activeTransaction.get();
+    		if(transaction != null) {
     			log.debug("Using active transaction connection");
-    			return activeTransaction;
+    			return transaction;
     		}
     		log.debug("Establishing \"new\" connection");
     		return ds.getConnection();
     	}
     	
+    	/**
+    	 * Logs the execution plan of a statement. The plan is fetched asynchronously on a connection of its own, 
+    	 * never on the connection of the active transaction
+    	 */
+    	public void explain(String sql, ISetParams setParams) {
+    		executor().execute(() -> {
+    			String modeOn = dialect.getExplainMode(true);
+    			String modeOff = dialect.getExplainMode(false);
+    			Connection con = null;
+    			try {
+    				con = ds.getConnection();
+    				if(modeOn != null)
+    					try(Statement st = con.createStatement()) { st.execute(modeOn); }
+    				try(PreparedStatement ps = con.prepareStatement(dialect.getExplainStatement(sql))) {
+    					setParams.run(ps);
+    					try(ResultSet rs = ps.executeQuery()) {
+    						slowQueries.logPlan(sql, rs);
+    					}
+    				}
+    			} catch(SQLException e) {
+    				log.warn("Can't explain statement {}: {}", sql, e.getMessage());
+    			} finally {
+    				if(con != null) closeExplainConnection(con, modeOff);
+    			}
+    		});
+    	}
+    	
+    	/**
+    	 * Switches the explain mode off again before the connection goes back to the pool. If that fails, 
+    	 * the connection is removed from the pool, so no statement is ever run in explain mode by accident
+    	 */
+    	private void closeExplainConnection(Connection con, String modeOff) {
+    		try {
+    			if(modeOff != null)
+    				try(Statement st = con.createStatement()) { st.execute(modeOff); }
+    			con.close();
+    		} catch(SQLException e) {
+    			log.warn("Can't leave explain mode, discarding connection", e);
+    			invalidate(con);
+    		}
+    	}
+    	
+    	/**
+    	 * Opens <code>minIdle</code> connections at the same time, so the pool can't hand out the same connection twice,
+    	 * and prepares the statements on each. The connections go back to the pool when all are done
+    	 * 
+    	 * @return future of the number of valid connections
+    	 */
+    	public CompletableFuture<Integer> warmUp(Collection<String> statements) {
+    		int count = Math.min(minIdle, maxTotal < 0 ? Integer.MAX_VALUE : maxTotal);
+    		List<CompletableFuture<Connection>> opened = new ArrayList<>();
+    		for(int i = 0; i < count; i++)
+    			opened.add(CompletableFuture.supplyAsync(() -> openWarmConnection(statements), executor()));
+    		return CompletableFuture.allOf(opened.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+    			int valid = 0;
+    			for(CompletableFuture<Connection> f : opened) {
+    				Connection con = f.join();
+    				if(con == null) continue;
+    				valid++;
+    				try {
+    					con.close();
+    				} catch(SQLException e) {
+    					e.printStackTrace();
+    				}
+    			}
+    			return valid;
+    		});
+    	}
+    	
+    	/**
+    	 * Opens and validates a connection and prepares the statements on it
+    	 * 
+    	 * @return the connection, <code>null</code> if it couldn't be opened or isn't valid
+    	 */
+    	private Connection openWarmConnection(Collection<String> statements) {
+    		Connection con;
+    		try {
+    			con = ds.getConnection();
+    			if(!con.isValid(WARM_UP_VALIDATION_SECONDS)) {
+    				log.warn("Invalid connection while warming up");
+    				invalidate(con);
+    				return null;
+    			}
+    		} catch(SQLException e) {
+    			log.warn("Can't open connection while warming up", e);
+    			return null;
+    		}
+    		for(String sql : statements) {
+    			// closing returns the statement to the statement pool of the connection
+    			try {
+    				con.prepareStatement(sql).close();
+    			} catch(SQLException e) {
+    				log.debug("Can't prepare " + sql, e);
+    			}
+    		}
+    		return con;
+    	}
+    	
+    	public boolean isTransactionActive() {
+    		return activeTransaction.get() != null;
+    	}
+    	
     	public void openTransaction() {
+    		if(activeTransaction.get() != null)
+    			throw new IllegalStateException("Can't open transaction when a transaction is already open on this thread");
     		try {
-    			activeTransaction = ds.getConnection();
-    			activeTransaction.setAutoCommit(false);;
+    			Connection transaction = ds.getConnection();
+    			transaction.setAutoCommit(false);
+    			activeTransaction.set(transaction);
     		} catch(SQLException e) {
     			e.printStackTrace();
     		}
     	}
     	
-    	public void commitTransaction() {
-    		if(activeTransaction == null)
+    	/**
+    	 * @return false if the commit failed and the transaction was rolled back
+    	 */
+    	public boolean commitTransaction() {
+    		Connection transaction = activeTransaction.get();
+    		if(transaction == null)
     			throw new IllegalStateException("Can't commit transaction when no transaction is open");
     		try {
-    			activeTransaction.commit();
-    			activeTransaction.setAutoCommit(true);
-    			activeTransaction.close();
-    			activeTransaction = null;
+    			transaction.commit();
+    			return true;
     		} catch(SQLException e) {
     			try {
-    				activeTransaction.rollback();
+    				transaction.rollback();
     			} catch(SQLException e1) {
     				e1.printStackTrace();
     			}
     			e.printStackTrace();
+    			return false;
+    		} finally {
+    			endTransaction(transaction);
     		}
     	}
     	
     	public void rollbackTransaction() {
-    		if(activeTransaction == null)
+    		Connection transaction = activeTransaction.get();
+    		if(transaction == null)
     			throw new IllegalStateException("Can't rollback transaction when no transaction is open");
     		try {
-    			activeTransaction.rollback();
-    			activeTransaction.setAutoCommit(true);
-    			activeTransaction.close();
-    			activeTransaction = null;
+    			transaction.rollback();
     		} catch(SQLException e) {
     			e.printStackTrace();
+    		} finally {
+    			endTransaction(transaction);
     		}
     	}
     	
-    	private String getConnectionString(String engine, String hostname, String database, 
-				boolean useIntegratedSecurity, String params) {
-    		if(engine.equals("mysql")) {
-    			if(useIntegratedSecurity) return getBaseConnectionString(engine, hostname)
-    					+ "/" + database
-    					+ "?" + "IntegratedSecurity=yes" + params;
-    			else return getBaseConnectionString(engine, hostname) 
-    					+ "/" + database 
-    					+ "?" + params;
-    		} else if(engine.equals("sqlserver")) {
-    			if(useIntegratedSecurity) 
-    				return getBaseConnectionString(engine, hostname)
-    					+ ";database=" + database 
-    					+ ";integratedSecurity=true"
-    					+ params;
-    			else return getBaseConnectionString(engine, hostname)
-    					+ ";database=" + database 
-    					+ params;
-    		} else throw new IllegalArgumentException("Not defined for engine " + engine);
+    	/**
+    	 * Returns the connection of a finished transaction to the pool and unbinds it from the current thread
+    	 */
+    	private void endTransaction(Connection transaction) {
+    		activeTransaction.remove();
+    		try {
+    			transaction.setAutoCommit(true);
+    			transaction.close();
+    		} catch(SQLException e) {
+    			e.printStackTrace();
+    		}
     	}
     	
+    	/**
+    	 * Closes the pool, unless it belongs to the application
+    	 */
+    	public void shutdown() throws SQLException {
+    		synchronized(this) {
+    			if(asyncThreads != null) asyncThreads.shutdown();
+    		}
+    		if(basic != null) basic.close();
+    	}
     	
-    	private String getBaseConnectionString(String engine, String hostname) {
-    		return "jdbc:" + engine + "://" + hostname;
+    	/**
+    	 * Returns the number of asynchronous operations running at the same time: one less than the connections, 
+    	 * at least one. -1 if the number of connections isn't limited
+    	 */
+    	private int asyncSlots() {
+    		return maxTotal < 0 ? -1 : Math.max(1, maxTotal - 1);
     	}
     	
-    	public void shutdown() throws SQLException {
-    		ds.close();
+    	/**
+    	 * Returns the executor of the asynchronous operations of this pool. Without an executor set by {@link Database#setAsyncExecutor(Executor)} 
+    	 * that is a fixed pool of daemon threads, one per permit, so waiting operations queue up without 
+    	 * occupying a thread each
+    	 */
+    	private Executor executor() {
+    		Executor executor = asyncExecutor;
+    		if(executor != null) return executor;
+    		synchronized(this) {
+    			if(asyncThreads == null)
+    				asyncThreads = Executors.newFixedThreadPool(asyncSlots() < 0 ? DEFAULT_ASYNC_THREADS : asyncSlots(), r -> {
+    					Thread t = new Thread(r, "Database-async");
+    					t.setDaemon(true);
+    					return t;
+    				});
+    			return asyncThreads;
+    		}
     	}
     }
 }
\ No newline at end of file
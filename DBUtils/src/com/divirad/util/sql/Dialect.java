@@ -0,0 +1,204 @@
+package com.divirad.util.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The SQL and driver settings that differ between database engines. The dialect of a profile is chosen by its 
+ * <code>engine</code> property, see {@link EngineSpecifics#getDialect(String)}. Other engines can be added with 
+ * {@link EngineSpecifics#registerDialect(String, Dialect)}, usually by extending one of the existing dialects
+ */
+public interface Dialect {
+	
+	/**
+	 * Name of the column of {@link #getGeneratedKeysStatement(String, String[])} with the index of the inserted row
+	 */
+	String GENERATED_ROW = "generated_row";
+	
+	/**
+	 * Returns the name of the engine as used in the <code>engine</code> property, e.g. <code>mysql</code>
+	 */
+	String getEngine();
+	
+	String getLeadingIdentifierSign();
+	
+	String getTrailingIdentifierSign();
+	
+	/**
+	 * Returns the JDBC url of a database
+	 * 
+	 * @param params additional parameters, appended to the end of the url as they are
+	 */
+	String getConnectionString(String hostname, String database, boolean useIntegratedSecurity, String params);
+	
+	/**
+	 * Returns the maximum number of parameters of one statement
+	 */
+	int getMaxParameters();
+	
+	/**
+	 * Returns the default number of rows written by one multi row statement or one JDBC batch
+	 */
+	int getMaxBatchRows();
+	
+	/**
+	 * Returns the fetch size used for streamed queries
+	 */
+	int getStreamingFetchSize();
+	
+	/**
+	 * Returns if the driver ignores the fetch size while auto commit is on. Streamed queries outside of a transaction
+	 * then turn auto commit off until the stream is closed
+	 */
+	default boolean isStreamingInTransaction() {
+		return false;
+	}
+	
+	/**
+	 * Returns a condition matching rows whose key columns equal one of several parameter lists, 
+	 * e.g. <code>id IN (?,?,?)</code>. Several key columns are compared as row values, 
+	 * e.g. <code>(a,b) IN ((?,?),(?,?))</code>
+	 * 
+	 * @param columns the key columns
+	 * @param rows number of keys
+	 */
+	default String getKeyListPredicate(String[] columns, int rows) {
+		StringBuilder sb = new StringBuilder();
+		if(columns.length == 1) {
+			sb.append(columns[0]).append(" IN (");
+			for(int i = 0; i < rows; i++) sb.append(i == 0 ? "?" : ",?");
+			return sb.append(')').toString();
+		}
+		String row = parameterRow(columns.length);
+		sb.append('(').append(String.join(",", columns)).append(") IN (");
+		for(int i = 0; i < rows; i++) sb.append(i == 0 ? "" : ",").append(row);
+		return sb.append(')').toString();
+	}
+	
+	/**
+	 * Returns a statement inserting rows or updating them if a row with the same key exists.
+	 * The parameters are the values of <code>columns</code>, row by row
+	 * 
+	 * @param table the table, with identifier signs
+	 * @param columns all written columns, including the key columns
+	 * @param keys the key columns identifying existing rows
+	 * @param rows number of rows
+	 */
+	String getUpsertStatement(String table, String[] columns, String[] keys, int rows);
+	
+	/**
+	 * Returns a condition matching the rows whose key columns sort after a key, e.g. <code>(a,b) &gt; (?,?)</code>, 
+	 * used for keyset pagination with an <code>ORDER BY</code> of the same columns. 
+	 * The parameters are the key values in the order of {@link #getKeysetParameters(int)}
+	 * 
+	 * @param columns the key columns in sort order
+	 */
+	default String getKeysetPredicate(String[] columns) {
+		if(columns.length == 1) return columns[0] + ">?";
+		return "(" + String.join(",", columns) + ")>" + parameterRow(columns.length);
+	}
+	
+	/**
+	 * Returns the index of the key column bound to each parameter of {@link #getKeysetPredicate(String[])}
+	 */
+	default int[] getKeysetParameters(int columns) {
+		int[] indices = new int[columns];
+		for(int i = 0; i < columns; i++) indices[i] = i;
+		return indices;
+	}
+	
+	/**
+	 * Returns the clause limiting a query to its first rows, appended after the <code>ORDER BY</code> clause
+	 */
+	default String getLimitClause(int rows) {
+		return " LIMIT " + rows;
+	}
+	
+	/**
+	 * Returns an insert statement that returns the generated values as its result set, <code>null</code> if 
+	 * the driver returns them by {@link java.sql.Statement#getGeneratedKeys()} (also for batches and multi row inserts). 
+	 * If the rows of the result set aren't in the order of the inserted rows, the result set has a column 
+	 * {@link #GENERATED_ROW} with the index of the inserted row (starting with 0)
+	 * 
+	 * @param insertSql an <code>INSERT INTO table (...) VALUES ...</code> statement
+	 * @param columns the generated columns
+	 */
+	default String getGeneratedKeysStatement(String insertSql, String[] columns) {
+		return null;
+	}
+	
+	/**
+	 * Writes rows with the bulk loader of the engine, which is much faster than inserts for large numbers of rows.
+	 * The rows are streamed to the loader while they are iterated
+	 * 
+	 * @param con the connection, usually a pooled connection wrapping the connection of the driver
+	 * @param table the table, with identifier signs
+	 * @param columns the loaded columns
+	 * @param rows the values of the rows, in the order of <code>columns</code>
+	 * @return number of loaded rows
+	 * @throws UnsupportedOperationException if there is no loader for the engine or its driver, before any row is read
+	 */
+	default long bulkLoad(Connection con, String table, String[] columns, Iterator<Object[]> rows) throws SQLException {
+		throw new UnsupportedOperationException("No bulk loader for engine " + getEngine());
+	}
+	
+	/**
+	 * Returns whether {@link #bulkLoad(Connection, String, String[], Iterator)} can be used: the engine has a loader 
+	 * and the driver it needs is there
+	 */
+	default boolean supportsBulkLoad() {
+		return false;
+	}
+	
+	/**
+	 * Returns the query returning the last value generated by an auto increment column on the same connection
+	 */
+	String getLastIdStatement();
+	
+	/**
+	 * Returns the statement showing the execution plan of <code>sql</code>. It takes the same parameters as 
+	 * <code>sql</code> and has to be executed in the mode set by {@link #getExplainMode(boolean)}
+	 */
+	default String getExplainStatement(String sql) {
+		return "EXPLAIN " + sql;
+	}
+	
+	/**
+	 * Returns the statement switching a connection to returning execution plans instead of executing statements 
+	 * (or back), <code>null</code> if the engine doesn't need a mode
+	 */
+	default String getExplainMode(boolean enabled) {
+		return null;
+	}
+	
+	/**
+	 * Returns a list of parameters for one row, e.g. <code>(?,?,?)</code>
+	 */
+	static String parameterRow(int columns) {
+		return "(" + String.join(",", Collections.nCopies(columns, "?")) + ")";
+	}
+	
+	/**
+	 * Returns the parameter lists of several rows, e.g. <code>(?,?),(?,?)</code>
+	 */
+	static String parameterRows(int columns, int rows) {
+		String row = parameterRow(columns);
+		StringBuilder sb = new StringBuilder(rows * (row.length() + 1));
+		for(int i = 0; i < rows; i++) sb.append(i == 0 ? "" : ",").append(row);
+		return sb.toString();
+	}
+	
+	/**
+	 * Returns the columns that are not key columns, the columns updated by an upsert
+	 */
+	static List<String> nonKeyColumns(String[] columns, String[] keys) {
+		List<String> updated = new ArrayList<>(Arrays.asList(columns));
+		updated.removeAll(Arrays.asList(keys));
+		return updated;
+	}
+}
@@ -0,0 +1,62 @@
+package com.divirad.util.sql;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.SQLException;
+import java.sql.Wrapper;
+
+/**
+ * Reflective access to classes of JDBC drivers, so features of a driver can be used without depending on it
+ */
+final class Drivers {
+	
+	private Drivers() {
+	}
+	
+	/**
+	 * Returns the first of the driver classes that is wrapped by <code>wrapper</code> (e.g. a pooled connection), 
+	 * <code>null</code> if it wraps none of them or the driver isn't there
+	 */
+	static Class<?> findWrapped(Wrapper wrapper, String... classNames) throws SQLException {
+		for(String name : classNames) {
+			Class<?> cls = find(wrapper.getClass().getClassLoader(), name);
+			if(cls != null && wrapper.isWrapperFor(cls)) return cls;
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the first of the driver classes that exists, <code>null</code> if none does
+	 */
+	static Class<?> find(ClassLoader loader, String... classNames) {
+		for(String name : classNames) {
+			try {
+				return Class.forName(name, false, loader);
+			} catch(ClassNotFoundException | LinkageError e) {
+				try {
+					return Class.forName(name);
+				} catch(ClassNotFoundException | LinkageError ex) {
+					continue;
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Calls a public method of a driver object. Exceptions thrown by the method are rethrown as {@link SQLException}
+	 */
+	static Object invoke(Class<?> cls, Object target, String method, Class<?>[] types, Object... args) throws SQLException {
+		try {
+			return cls.getMethod(method, types).invoke(target, args);
+		} catch(InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof SQLException) throw (SQLException) cause;
+			if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if(cause instanceof IOException) throw new SQLException(cause.getMessage(), cause);
+			throw new SQLException(cause);
+		} catch(ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Driver has no method " + cls.getName() + "." + method, e);
+		}
+	}
+}
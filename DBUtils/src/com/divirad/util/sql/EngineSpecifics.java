@@ -1,16 +1,104 @@
 package com.divirad.util.sql;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link Dialect}s of the engines by their names. The static methods are shortcuts to the dialect of an engine
+ */
 public class EngineSpecifics {
+	
+	private static final Map<String, Dialect> dialects = new ConcurrentHashMap<>();
+	
+	static {
+		registerDialect(new MySqlDialect());
+		registerDialect(new SqlServerDialect());
+		registerDialect(new PostgreSqlDialect());
+		registerDialect(new H2Dialect());
+		registerDialect(new SqliteDialect());
+	}
+	
+	/**
+	 * Returns the dialect of an engine
+	 * 
+	 * @param engine the <code>engine</code> property of a profile
+	 * @throws IllegalArgumentException if no dialect is registered for the engine
+	 */
+	public static Dialect getDialect(String engine) {
+		Dialect dialect = dialects.get(engine);
+		if(dialect == null) throw new IllegalArgumentException("Not defined for engine " + engine);
+		return dialect;
+	}
+	
+	/**
+	 * Registers a dialect under its engine name, replacing the dialect registered for it before. 
+	 * Profiles read before keep their dialect
+	 */
+	public static void registerDialect(Dialect dialect) {
+		registerDialect(dialect.getEngine(), dialect);
+	}
+	
+	public static void registerDialect(String engine, Dialect dialect) {
+		dialects.put(engine, dialect);
+	}
 
 	public static String getLeadingIdentifierSign(String engine) {
-		if(engine.equals("mysql")) return "`";
-		else if(engine.equals("sqlserver")) return "";
-		else throw new IllegalArgumentException("Not defined for engine " + engine);
+		return getDialect(engine).getLeadingIdentifierSign();
 	}
 	
 	public static String getTrailingIdentifierSign(String engine) {
-		if(engine.equals("mysql")) return "`";
-		else if(engine.equals("sqlserver")) return "";
-		else throw new IllegalArgumentException("Not defined for engine " + engine);
+		return getDialect(engine).getTrailingIdentifierSign();
+	}
+	
+	/**
+	 * Returns the maximum number of parameters of one statement, see {@link Dialect#getMaxParameters()}
+	 */
+	public static int getMaxParameters(String engine) {
+		return getDialect(engine).getMaxParameters();
+	}
+	
+	/**
+	 * Returns the default number of rows written by one multi row statement or one JDBC batch, 
+	 * see {@link Dialect#getMaxBatchRows()}
+	 */
+	public static int getMaxBatchRows(String engine) {
+		return getDialect(engine).getMaxBatchRows();
+	}
+	
+	/**
+	 * Returns the fetch size used for streamed queries, see {@link Dialect#getStreamingFetchSize()}
+	 */
+	public static int getStreamingFetchSize(String engine) {
+		return getDialect(engine).getStreamingFetchSize();
+	}
+	
+	/**
+	 * Returns a condition matching rows whose key columns equal one of several parameter lists, 
+	 * see {@link Dialect#getKeyListPredicate(String[], int)}
+	 */
+	public static String getKeyListPredicate(String engine, String[] columns, int rows) {
+		return getDialect(engine).getKeyListPredicate(columns, rows);
+	}
+	
+	/**
+	 * Returns a statement inserting rows or updating them if a row with the same key exists, 
+	 * see {@link Dialect#getUpsertStatement(String, String[], String[], int)}
+	 */
+	public static String getUpsertStatement(String engine, String table, String[] columns, String[] keys, int rows) {
+		return getDialect(engine).getUpsertStatement(table, columns, keys, rows);
+	}
+	
+	/**
+	 * Returns the statement showing the execution plan of <code>sql</code>, see {@link Dialect#getExplainStatement(String)}
+	 */
+	public static String getExplainStatement(String engine, String sql) {
+		return getDialect(engine).getExplainStatement(sql);
+	}
+	
+	/**
+	 * Returns the statement switching a connection to returning execution plans, see {@link Dialect#getExplainMode(boolean)}
+	 */
+	public static String getExplainMode(String engine, boolean enabled) {
+		return getDialect(engine).getExplainMode(enabled);
 	}
 }
@@ -0,0 +1,129 @@
+package com.divirad.util.sql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of entities by primary key used by {@link Dao#select} and {@link OpenDao#select}.
+ * Least recently used entries are evicted when the cache is full, entries older than the time to live are reloaded.
+ * Writes through the same Dao invalidate the written keys.
+ * The counters can be used to size the cache.
+ *
+ * @param <T> Class of the cached entities
+ */
+public class EntityCache<T> {
+	
+	private static class CacheEntry<T> {
+		private final T value;
+		private final long loaded;
+		
+		private CacheEntry(T value, long loaded) {
+			this.value = value;
+			this.loaded = loaded;
+		}
+	}
+	
+	private final int maxSize;
+	private final long ttlNanos;
+	private final LinkedHashMap<EntityKey, CacheEntry<T>> entries;
+	
+	private long hits;
+	private long misses;
+	private long evictions;
+	/**
+	 * Incremented by every invalidation, so rows loaded before an invalidation aren't cached afterwards
+	 */
+	private long generation;
+	
+	/**
+	 * @param maxSize maximum number of cached entities
+	 * @param ttlMillis time to live of an entry in milliseconds, 0 for no limit
+	 */
+	public EntityCache(int maxSize, long ttlMillis) {
+		if(maxSize <= 0)
+			throw new IllegalArgumentException("maxSize must be positive");
+		this.maxSize = maxSize;
+		this.ttlNanos = ttlMillis * 1_000_000L;
+		this.entries = new LinkedHashMap<EntityKey, CacheEntry<T>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<EntityKey, CacheEntry<T>> eldest) {
+				if(size() <= EntityCache.this.maxSize) return false;
+				evictions++;
+				return true;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the cached entity or <code>null</code> if the key isn't cached or the entry expired
+	 */
+	public synchronized T get(EntityKey key) {
+		CacheEntry<T> entry = entries.get(key);
+		if(entry != null && ttlNanos > 0 && System.nanoTime() - entry.loaded > ttlNanos) {
+			entries.remove(key);
+			evictions++;
+			entry = null;
+		}
+		if(entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.value;
+	}
+	
+	/**
+	 * Returns the current generation, pass it to {@link #put(EntityKey, Object, long)} after loading the entity
+	 */
+	public synchronized long getGeneration() {
+		return generation;
+	}
+	
+	/**
+	 * Caches an entity unless the cache was invalidated since it was loaded
+	 * 
+	 * @param generation the generation before the entity was loaded
+	 */
+	public synchronized void put(EntityKey key, T value, long generation) {
+		if(generation != this.generation) return;
+		entries.put(key, new CacheEntry<>(value, System.nanoTime()));
+	}
+	
+	public synchronized void invalidate(EntityKey key) {
+		generation++;
+		entries.remove(key);
+	}
+	
+	public synchronized void clear() {
+		generation++;
+		entries.clear();
+	}
+	
+	public synchronized int getSize() {
+		return entries.size();
+	}
+	
+	public int getMaxSize() {
+		return maxSize;
+	}
+	
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "EntityCache [size=" + entries.size() + "/" + maxSize + ", hits=" + hits + ", misses=" + misses 
+				+ ", evictions=" + evictions + "]";
+	}
+}
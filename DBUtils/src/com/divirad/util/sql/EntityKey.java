@@ -0,0 +1,77 @@
+package com.divirad.util.sql;
+
+import java.util.Arrays;
+
+/**
+ * Value of the primary key (or any other list of key fields) of one entity, usable as key of a map.
+ * Integral numbers are compared by value regardless of their type, so an <code>int</code> primary key matches a 
+ * <code>Long</code> foreign key.
+ */
+public final class EntityKey {
+	
+	private final Object[] values;
+	private final int hash;
+	
+	private EntityKey(Object[] values) {
+		this.values = values;
+		this.hash = Arrays.deepHashCode(values);
+	}
+	
+	/**
+	 * Creates a key from the values of fields
+	 * 
+	 * @param data the entity
+	 * @param keys accessors of the key fields, e.g. the primary keys
+	 */
+	public static <T> EntityKey of(T data, FieldAccessor<T>[] keys) {
+		Object[] values = new Object[keys.length];
+		for(int i = 0; i < keys.length; i++)
+			values[i] = normalize(keys[i].get(data));
+		return new EntityKey(values);
+	}
+	
+	/**
+	 * Creates a key from values
+	 */
+	public static EntityKey of(Object... values) {
+		Object[] normalized = new Object[values.length];
+		for(int i = 0; i < values.length; i++)
+			normalized[i] = normalize(values[i]);
+		return new EntityKey(normalized);
+	}
+	
+	private static Object normalize(Object value) {
+		if(value instanceof Integer || value instanceof Short || value instanceof Byte)
+			return ((Number) value).longValue();
+		return value;
+	}
+	
+	/**
+	 * Returns the value of the key field with the given index
+	 */
+	public Object get(int index) {
+		return values[index];
+	}
+	
+	public int size() {
+		return values.length;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj) return true;
+		if(!(obj instanceof EntityKey)) return false;
+		EntityKey other = (EntityKey) obj;
+		return hash == other.hash && Arrays.deepEquals(values, other.values);
+	}
+	
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+	
+	@Override
+	public String toString() {
+		return Arrays.deepToString(values);
+	}
+}
@@ -0,0 +1,402 @@
+package com.divirad.util.sql;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.Field;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+/**
+ * Precompiled access to one column field of an entity class.
+ * The type of the field is resolved once when the accessor is created, so binding a parameter or reading a column
+ * is a single typed call without any type dispatch or boxing of primitive fields.
+ * <p>
+ * Accessors are either compiled from a {@link Field} at runtime or generated as plain code by
+ * {@code com.divirad.util.sql.processor.DaoProcessor}.
+ *
+ * @param <T> Class which fields represent the columns of a table.
+ */
+public final class FieldAccessor<T> {
+
+	/**
+	 * Writes the value of the field of <code>data</code> into the parameter <code>index</code> of <code>ps</code>
+	 */
+	@FunctionalInterface
+	public interface Binder<T> {
+		void bind(PreparedStatement ps, int index, T data) throws Throwable;
+	}
+
+	/**
+	 * Reads the column <code>index</code> of the current row of <code>rs</code> into the field of <code>target</code>
+	 */
+	@FunctionalInterface
+	public interface Extractor<T> {
+		void extract(ResultSet rs, int index, T target) throws Throwable;
+	}
+
+	/**
+	 * Returns the (boxed) value of the field of <code>data</code>
+	 */
+	@FunctionalInterface
+	public interface Getter<T> {
+		Object get(T data) throws Throwable;
+	}
+
+	/**
+	 * Sets the field of <code>data</code> to a (boxed) value
+	 */
+	@FunctionalInterface
+	public interface Setter<T> {
+		void set(T data, Object value) throws Throwable;
+	}
+
+	/** Flag: the field is marked with {@link SqlMarker.PrimaryKey} */
+	public static final int PRIMARY_KEY = 1;
+	/** Flag: the field is marked with {@link SqlMarker.AutomaticValue} */
+	public static final int AUTOMATIC_VALUE = 2;
+	/** Flag: the field is marked with {@link SqlMarker.JoinField} */
+	public static final int JOIN_FIELD = 4;
+	/** Flag: the field is marked with {@link SqlMarker.LazyField} */
+	public static final int LAZY = 8;
+
+	private final String name;
+	private final Class<?> type;
+	private final int flags;
+	private final Getter<T> getter;
+	private final Setter<T> setter;
+	private final Binder<T> binder;
+	private final Extractor<T> extractor;
+
+	private FieldAccessor(String name, Class<?> type, int flags, Getter<T> getter, Setter<T> setter,
+			Binder<T> binder, Extractor<T> extractor) {
+		this.name = name;
+		this.type = type;
+		this.flags = flags;
+		this.getter = getter;
+		this.setter = setter;
+		this.binder = binder;
+		this.extractor = extractor;
+	}
+
+	/**
+	 * Creates an accessor from plain code, without any reflection
+	 *
+	 * @param name      name of the field and column
+	 * @param type      type of the field
+	 * @param flags     combination of {@link #PRIMARY_KEY}, {@link #AUTOMATIC_VALUE}, {@link #JOIN_FIELD} and {@link #LAZY}
+	 * @param getter    returns the boxed value of the field
+	 * @param setter    sets the field to a boxed value
+	 * @param binder    binds the field as parameter
+	 * @param extractor reads the field from a column
+	 */
+	public static <T> FieldAccessor<T> of(String name, Class<?> type, int flags, Getter<T> getter, Setter<T> setter,
+			Binder<T> binder, Extractor<T> extractor) {
+		return new FieldAccessor<>(name, type, flags, getter, setter, binder, extractor);
+	}
+
+	/**
+	 * Creates the accessor for a field. The field is made accessible if necessary.
+	 * <p>
+	 * {@link InputStream}, {@link ReadableByteChannel} and {@link Reader} fields are bound with
+	 * <code>setBinaryStream</code> and <code>setCharacterStream</code>, so the driver reads the value from the stream
+	 * while it executes the statement. The stream is not closed. Reading such a column returns the stream of the driver,
+	 * which is only readable while the <code>ResultSet</code> is open. So these fields and {@link Blob} and 
+	 * {@link Clob} fields are always lazy, see {@link #isLazy()}.
+	 *
+	 * @param field a field of <code>T</code>
+	 * @return accessor binding and extracting the field with the matching typed JDBC methods
+	 */
+	public static <T> FieldAccessor<T> of(Field field) {
+		field.setAccessible(true);
+		MethodHandle getter, setter;
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			getter = lookup.unreflectGetter(field);
+			setter = lookup.unreflectSetter(field);
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException("Can't access field: " + field.getName(), e);
+		}
+		Class<?> t = field.getType();
+		// erase the declaring class so the handles can be called with invokeExact on T
+		MethodHandle get = getter.asType(MethodType.methodType(t.isPrimitive() ? t : Object.class, Object.class));
+		MethodHandle set = setter.asType(MethodType.methodType(void.class, Object.class, t.isPrimitive() ? t : Object.class));
+		MethodHandle boxedGet = getter.asType(MethodType.methodType(Object.class, Object.class));
+		MethodHandle boxedSet = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+
+		Binder<T> binder;
+		Extractor<T> extractor;
+		if (t == int.class) {
+			binder = (ps, i, d) -> ps.setInt(i, (int) get.invokeExact((Object) d));
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, rs.getInt(i)); };
+		} else if (t == long.class) {
+			binder = (ps, i, d) -> ps.setLong(i, (long) get.invokeExact((Object) d));
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, rs.getLong(i)); };
+		} else if (t == boolean.class) {
+			binder = (ps, i, d) -> ps.setBoolean(i, (boolean) get.invokeExact((Object) d));
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, rs.getBoolean(i)); };
+		} else if (t == byte.class) {
+			binder = (ps, i, d) -> ps.setByte(i, (byte) get.invokeExact((Object) d));
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, rs.getByte(i)); };
+		} else if (t == float.class) {
+			binder = (ps, i, d) -> ps.setFloat(i, (float) get.invokeExact((Object) d));
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, rs.getFloat(i)); };
+		} else if (t == double.class) {
+			binder = (ps, i, d) -> ps.setDouble(i, (double) get.invokeExact((Object) d));
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, rs.getDouble(i)); };
+		} else if (t == Integer.class) {
+			binder = (ps, i, d) -> {
+				Object v = get.invokeExact((Object) d);
+				if (v == null) ps.setObject(i, null);
+				else ps.setInt(i, (Integer) v);
+			};
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, (Object) rs.getInt(i)); };
+		} else if (t == Long.class) {
+			binder = (ps, i, d) -> {
+				Object v = get.invokeExact((Object) d);
+				if (v == null) ps.setObject(i, null);
+				else ps.setLong(i, (Long) v);
+			};
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, (Object) rs.getLong(i)); };
+		} else if (t == Boolean.class) {
+			binder = (ps, i, d) -> {
+				Object v = get.invokeExact((Object) d);
+				if (v == null) ps.setObject(i, null);
+				else ps.setBoolean(i, (Boolean) v);
+			};
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, (Object) rs.getBoolean(i)); };
+		} else if (t == Byte.class) {
+			binder = (ps, i, d) -> {
+				Object v = get.invokeExact((Object) d);
+				if (v == null) ps.setObject(i, null);
+				else ps.setByte(i, (Byte) v);
+			};
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, (Object) rs.getByte(i)); };
+		} else if (t == Float.class) {
+			binder = (ps, i, d) -> {
+				Object v = get.invokeExact((Object) d);
+				if (v == null) ps.setObject(i, null);
+				else ps.setFloat(i, (Float) v);
+			};
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, (Object) rs.getFloat(i)); };
+		} else if (t == Double.class) {
+			binder = (ps, i, d) -> {
+				Object v = get.invokeExact((Object) d);
+				if (v == null) ps.setObject(i, null);
+				else ps.setDouble(i, (Double) v);
+			};
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, (Object) rs.getDouble(i)); };
+		} else if (t == String.class) {
+			binder = (ps, i, d) -> {
+				Object v = get.invokeExact((Object) d);
+				ps.setString(i, (String) v);
+			};
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, (Object) rs.getString(i)); };
+		} else if (t == byte[].class) {
+			binder = (ps, i, d) -> {
+				Object v = get.invokeExact((Object) d);
+				ps.setBytes(i, (byte[]) v);
+			};
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, (Object) rs.getBytes(i)); };
+		} else if (t == Date.class) {
+			binder = (ps, i, d) -> {
+				Object v = get.invokeExact((Object) d);
+				ps.setDate(i, (Date) v);
+			};
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, (Object) rs.getDate(i)); };
+		} else if (t == Time.class) {
+			binder = (ps, i, d) -> {
+				Object v = get.invokeExact((Object) d);
+				ps.setTime(i, (Time) v);
+			};
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, (Object) rs.getTime(i)); };
+		} else if (t == Timestamp.class) {
+			binder = (ps, i, d) -> {
+				Object v = get.invokeExact((Object) d);
+				ps.setTimestamp(i, (Timestamp) v);
+			};
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, (Object) rs.getTimestamp(i)); };
+		} else if (t == InputStream.class) {
+			binder = (ps, i, d) -> {
+				Object v = get.invokeExact((Object) d);
+				if (v == null) ps.setNull(i, Types.LONGVARBINARY);
+				else ps.setBinaryStream(i, (InputStream) v);
+			};
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, (Object) rs.getBinaryStream(i)); };
+		} else if (t == ReadableByteChannel.class) {
+			binder = (ps, i, d) -> {
+				Object v = get.invokeExact((Object) d);
+				if (v == null) ps.setNull(i, Types.LONGVARBINARY);
+				else ps.setBinaryStream(i, Channels.newInputStream((ReadableByteChannel) v));
+			};
+			extractor = (rs, i, r) -> {
+				InputStream in = rs.getBinaryStream(i);
+				set.invokeExact((Object) r, (Object) (in == null ? null : Channels.newChannel(in)));
+			};
+		} else if (t == Reader.class) {
+			binder = (ps, i, d) -> {
+				Object v = get.invokeExact((Object) d);
+				if (v == null) ps.setNull(i, Types.LONGVARCHAR);
+				else ps.setCharacterStream(i, (Reader) v);
+			};
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, (Object) rs.getCharacterStream(i)); };
+		} else if (t == Blob.class) {
+			binder = (ps, i, d) -> {
+				Object v = get.invokeExact((Object) d);
+				if (v == null) ps.setNull(i, Types.BLOB);
+				else ps.setBlob(i, (Blob) v);
+			};
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, (Object) rs.getBlob(i)); };
+		} else if (t == Clob.class) {
+			binder = (ps, i, d) -> {
+				Object v = get.invokeExact((Object) d);
+				if (v == null) ps.setNull(i, Types.CLOB);
+				else ps.setClob(i, (Clob) v);
+			};
+			extractor = (rs, i, r) -> { set.invokeExact((Object) r, (Object) rs.getClob(i)); };
+		} else {
+			// unknown types only fail when they are actually used, e.g. join fields are never bound
+			binder = (ps, i, d) -> {
+				throw new IllegalStateException("Unknown type of field: " + field.getName() + ", " + t.getName());
+			};
+			extractor = (rs, i, r) -> {
+				throw new IllegalStateException("Unknown type of field");
+			};
+		}
+		int flags = 0;
+		if (field.getAnnotation(SqlMarker.PrimaryKey.class) != null)
+			flags |= PRIMARY_KEY;
+		if (field.getAnnotation(SqlMarker.AutomaticValue.class) != null)
+			flags |= AUTOMATIC_VALUE;
+		if (field.getAnnotation(SqlMarker.JoinField.class) != null)
+			flags |= JOIN_FIELD;
+		if (field.getAnnotation(SqlMarker.LazyField.class) != null)
+			flags |= LAZY;
+		return new FieldAccessor<>(field.getName(), t, flags,
+				d -> boxedGet.invokeExact((Object) d),
+				(d, v) -> { boxedSet.invokeExact((Object) d, v); },
+				binder, extractor);
+	}
+
+	/**
+	 * Creates a copy of this accessor that reads the column with another extractor
+	 */
+	public FieldAccessor<T> withExtractor(Extractor<T> extractor) {
+		return new FieldAccessor<>(name, type, flags, getter, setter, binder, extractor);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Class<?> getType() {
+		return type;
+	}
+
+	public boolean isPrimaryKey() {
+		return (flags & PRIMARY_KEY) != 0;
+	}
+
+	public boolean isAutomaticValue() {
+		return (flags & AUTOMATIC_VALUE) != 0;
+	}
+
+	public boolean isJoinField() {
+		return (flags & JOIN_FIELD) != 0;
+	}
+
+	/**
+	 * Returns whether the field isn't read by the selects of the Dao: it is marked with {@link SqlMarker.LazyField} 
+	 * or it is a stream field, see {@link #isStream()}
+	 */
+	public boolean isLazy() {
+		return (flags & LAZY) != 0 || isStream();
+	}
+
+	/**
+	 * Returns whether the field streams its column, i.e. it is an {@link InputStream}, {@link ReadableByteChannel},
+	 * {@link Reader}, {@link Blob} or {@link Clob}. Such values can only be read once and only while the 
+	 * <code>ResultSet</code> is open
+	 */
+	public boolean isStream() {
+		return type == InputStream.class || type == ReadableByteChannel.class || type == Reader.class
+				|| type == Blob.class || type == Clob.class;
+	}
+
+	/**
+	 * Sets the parameter <code>index</code> of <code>ps</code> to the value of the field of <code>data</code>
+	 *
+	 * @return next index
+	 */
+	public int bind(PreparedStatement ps, T data, int index) throws SQLException {
+		try {
+			binder.bind(ps, index, data);
+		} catch (SQLException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+		return index + 1;
+	}
+
+	/**
+	 * Sets the field of <code>target</code> to the value of column <code>index</code> of the current row
+	 */
+	public void extract(ResultSet rs, int index, T target) throws SQLException {
+		try {
+			extractor.extract(rs, index, target);
+		} catch (SQLException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the (boxed) value of the field
+	 */
+	public Object get(T data) {
+		try {
+			return getter.get(data);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Sets the field to a (boxed) value
+	 */
+	public void set(T data, Object value) {
+		try {
+			setter.set(data, value);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Compiles the accessors of all fields
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public static <T> FieldAccessor<T>[] of(Field[] fields) {
+		FieldAccessor<T>[] accessors = new FieldAccessor[fields.length];
+		for (int i = 0; i < fields.length; i++)
+			accessors[i] = of(fields[i]);
+		return accessors;
+	}
+}
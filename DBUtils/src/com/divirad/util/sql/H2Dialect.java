@@ -0,0 +1,68 @@
+package com.divirad.util.sql;
+
+/**
+ * Dialect of the H2 database in its own mode, engine <code>h2</code>. Mainly used to run and benchmark locally 
+ * against an embedded database
+ */
+public class H2Dialect implements Dialect {
+
+	@Override
+	public String getEngine() {
+		return "h2";
+	}
+
+	/**
+	 * Quoted identifiers are case sensitive, so names are not quoted to match tables created without quotes
+	 */
+	@Override
+	public String getLeadingIdentifierSign() {
+		return "";
+	}
+
+	@Override
+	public String getTrailingIdentifierSign() {
+		return "";
+	}
+
+	/**
+	 * Without a hostname the database is embedded, <code>database</code> is then e.g. <code>mem:test</code> or 
+	 * a file path. Params start with <code>;</code>
+	 */
+	@Override
+	public String getConnectionString(String hostname, String database, boolean useIntegratedSecurity, String params) {
+		if(hostname == null || hostname.isEmpty()) return "jdbc:h2:" + database + params;
+		else return "jdbc:h2:tcp://" + hostname + "/" + database + params;
+	}
+
+	@Override
+	public int getMaxParameters() {
+		return 65535;
+	}
+
+	@Override
+	public int getMaxBatchRows() {
+		return 1000;
+	}
+
+	@Override
+	public int getStreamingFetchSize() {
+		return 1000;
+	}
+
+	/**
+	 * <code>MERGE INTO ... KEY (keys) VALUES</code>
+	 */
+	@Override
+	public String getUpsertStatement(String table, String[] columns, String[] keys, int rows) {
+		return "MERGE INTO " + table + " (" + String.join(",", columns) + ") KEY (" + String.join(",", keys) + ") VALUES " 
+				+ Dialect.parameterRows(columns.length, rows);
+	}
+
+	/**
+	 * Only the generated keys of the last statement, H2 has no session wide last id
+	 */
+	@Override
+	public String getLastIdStatement() {
+		throw new UnsupportedOperationException("Not defined for engine h2, use the generated keys of the insert");
+	}
+}
@@ -0,0 +1,153 @@
+package com.divirad.util.sql;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loads the objects of a {@link SqlMarker.JoinField} with a foreign key for many parents at once.
+ * The primary keys of the parents are collected and the children are selected with chunked
+ * <code>WHERE foreignKey IN (...)</code> queries, then distributed to the parents by their foreign key values.
+ *
+ * @param <T> class of the parents
+ * @param <J> class of the joined objects
+ */
+class JoinLoader<T, J> {
+	
+	/**
+	 * Dao of the joined class, only used to map the rows. Its statements aren't registered for the warm up
+	 */
+	private static final class ChildDao<J> extends OpenDao<J> {
+		
+		private ChildDao(Class<J> cls, String profileName) {
+			super(cls, profileName, false);
+		}
+		
+		@Override
+		protected <K> ArrayList<K> getJoinObjects(Field f, J result, Field[] primaryKeys) {
+			throw new UnsupportedOperationException(
+					"Join field " + f.getName() + " of a joined class must have a foreignKey");
+		}
+	}
+	
+	/**
+	 * Dao of each joined class by class and profile name, shared by all join fields of the class
+	 */
+	private static final Map<List<Object>, ChildDao<?>> childDaos = new ConcurrentHashMap<>();
+	
+	private final FieldAccessor<T> field;
+	private final FieldAccessor<T>[] parentKeys;
+	private final Class<J> childClass;
+	private final String[] foreignKeyColumns;
+	private final String profileName;
+	
+	private ChildDao<J> children;
+	private FieldAccessor<J>[] foreignKeys;
+	
+	/**
+	 * @param profileName the database profile of the parent Dao, the children are loaded from the same one
+	 */
+	@SuppressWarnings("unchecked")
+	JoinLoader(Field f, FieldAccessor<T> field, String foreignKey, FieldAccessor<T>[] parentKeys, String profileName) {
+		this(field, joinedClass(f), foreignKey, parentKeys, profileName);
+	}
+	
+	/**
+	 * Creates the loader without the reflected field, e.g. for the generated Daos
+	 * 
+	 * @param childClass the joined class, the type argument of the join field
+	 * @param profileName the database profile of the parent Dao, the children are loaded from the same one
+	 */
+	JoinLoader(FieldAccessor<T> field, Class<J> childClass, String foreignKey, FieldAccessor<T>[] parentKeys, String profileName) {
+		this.field = field;
+		this.parentKeys = parentKeys;
+		this.profileName = profileName;
+		this.childClass = childClass;
+		this.foreignKeyColumns = foreignKey.split(",");
+		for(int i = 0; i < foreignKeyColumns.length; i++)
+			foreignKeyColumns[i] = foreignKeyColumns[i].trim();
+		if(foreignKeyColumns.length != parentKeys.length)
+			throw new IllegalArgumentException("Can't use join field " + field.getName() 
+					+ ": foreignKey must name one column per primary key");
+	}
+	
+	/**
+	 * Returns the type argument of a join field
+	 */
+	@SuppressWarnings("rawtypes")
+	private static Class joinedClass(Field f) {
+		if(!f.getType().isAssignableFrom(ArrayList.class))
+			throw new IllegalArgumentException("Can't use join field " + f.getName() + ": ArrayList must be assignable to it");
+		Type type = f.getGenericType();
+		if(!(type instanceof ParameterizedType) || !(((ParameterizedType) type).getActualTypeArguments()[0] instanceof Class))
+			throw new IllegalArgumentException("Can't use join field " + f.getName() + ": must declare the joined class as type argument");
+		return (Class) ((ParameterizedType) type).getActualTypeArguments()[0];
+	}
+	
+	/**
+	 * Gets the Dao of the joined class on first use, so classes may join each other
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private synchronized void init() {
+		if(children != null) return;
+		ChildDao<J> dao = (ChildDao<J>) childDaos.computeIfAbsent(Arrays.asList(childClass, profileName), 
+				k -> new ChildDao<>(childClass, profileName));
+		FieldAccessor<J>[] keys = new FieldAccessor[foreignKeyColumns.length];
+		for(int i = 0; i < foreignKeyColumns.length; i++) {
+			for(FieldAccessor<J> accessor : dao.valueAccessors)
+				if(accessor.getName().equals(foreignKeyColumns[i]))
+					keys[i] = accessor;
+			if(keys[i] == null)
+				throw new IllegalArgumentException("Can't use join field " + field.getName() + ": " 
+						+ childClass.getName() + " has no field " + foreignKeyColumns[i]);
+		}
+		this.foreignKeys = keys;
+		this.children = dao;
+	}
+	
+	/**
+	 * Sets the join field of all parents to the list of their joined objects
+	 * 
+	 * @param parents the parents, with all primary keys set
+	 */
+	@SuppressWarnings("unchecked")
+	void load(List<T> parents) {
+		if(parents.isEmpty()) return;
+		init();
+		Map<EntityKey, List<T>> parentsByKey = new LinkedHashMap<>();
+		for(T parent : parents) {
+			parentsByKey.computeIfAbsent(EntityKey.of(parent, parentKeys), k -> new ArrayList<>()).add(parent);
+			field.set(parent, new ArrayList<J>());
+		}
+		
+		List<T> distinct = new ArrayList<>(parentsByKey.size());
+		for(List<T> sameKey : parentsByKey.values())
+			distinct.add(sameKey.get(0));
+		
+		int rows = Database.getBatchRows(profileName, parentKeys.length);
+		for(int from = 0; from < distinct.size(); from += rows) {
+			List<T> chunk = distinct.subList(from, Math.min(from + rows, distinct.size()));
+			String sql = "SELECT " + children.select_list + " FROM " + children.tableName 
+					+ " WHERE " + Database.getKeyListPredicate(profileName, foreignKeyColumns, chunk.size());
+			ArrayList<J> loaded = children.withJoins(Database.query(profileName, sql, ps -> {
+				int index = 1;
+				for(T parent : chunk)
+					for(FieldAccessor<T> key : parentKeys)
+						index = key.bind(ps, parent, index);
+			}, children::mapAll));
+			if(loaded == null) continue;
+			for(J child : loaded) {
+				List<T> owners = parentsByKey.get(EntityKey.of(child, foreignKeys));
+				if(owners == null) continue;
+				for(T owner : owners)
+					((List<J>) field.get(owner)).add(child);
+			}
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.divirad.util.sql;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Dialect of MySQL and MariaDB, engine <code>mysql</code>
+ */
+public class MySqlDialect implements Dialect {
+
+	/**
+	 * The statement classes of the driver used by the bulk loader
+	 */
+	private static final String[] DRIVER_STATEMENTS = { "com.mysql.cj.jdbc.JdbcStatement", "com.mysql.jdbc.Statement" };
+
+	@Override
+	public String getEngine() {
+		return "mysql";
+	}
+
+	@Override
+	public String getLeadingIdentifierSign() {
+		return "`";
+	}
+
+	@Override
+	public String getTrailingIdentifierSign() {
+		return "`";
+	}
+
+	@Override
+	public String getConnectionString(String hostname, String database, boolean useIntegratedSecurity, String params) {
+		if(useIntegratedSecurity) return "jdbc:mysql://" + hostname + "/" + database + "?" + "IntegratedSecurity=yes" + params;
+		else return "jdbc:mysql://" + hostname + "/" + database + "?" + params;
+	}
+
+	@Override
+	public int getMaxParameters() {
+		return 65535;
+	}
+
+	@Override
+	public int getMaxBatchRows() {
+		return 1000;
+	}
+
+	/**
+	 * MySQL only streams rows one by one with {@link Integer#MIN_VALUE} (or uses a server side cursor with a positive 
+	 * fetch size if <code>useCursorFetch=true</code> is set)
+	 */
+	@Override
+	public int getStreamingFetchSize() {
+		return Integer.MIN_VALUE;
+	}
+
+	/**
+	 * <code>INSERT ... ON DUPLICATE KEY UPDATE</code>, which updates an existing row in place 
+	 * unlike <code>REPLACE INTO</code>
+	 */
+	@Override
+	public String getUpsertStatement(String table, String[] columns, String[] keys, int rows) {
+		List<String> updated = Dialect.nonKeyColumns(columns, keys);
+		StringJoiner set = new StringJoiner(",");
+		for(String column : updated) set.add(column + "=VALUES(" + column + ")");
+		// a row of key columns only still needs an assignment to be ignored instead of failing
+		if(updated.isEmpty()) set.add(keys[0] + "=" + keys[0]);
+		return "INSERT INTO " + table + " (" + String.join(",", columns) + ") VALUES " 
+				+ Dialect.parameterRows(columns.length, rows) + " ON DUPLICATE KEY UPDATE " + set;
+	}
+
+	@Override
+	public boolean supportsBulkLoad() {
+		return Drivers.find(getClass().getClassLoader(), DRIVER_STATEMENTS) != null;
+	}
+
+	/**
+	 * <code>LOAD DATA LOCAL INFILE</code> reading from a stream instead of a file. Needs MySQL Connector/J with 
+	 * <code>allowLoadLocalInfile=true</code> in the params and <code>local_infile</code> enabled on the server. 
+	 * Like all local loads it ignores duplicate keys and invalid values with warnings instead of failing
+	 */
+	@Override
+	public long bulkLoad(Connection con, String table, String[] columns, Iterator<Object[]> rows) throws SQLException {
+		try(Statement st = con.createStatement()) {
+			Class<?> driverStatement = Drivers.findWrapped(st, DRIVER_STATEMENTS);
+			if(driverStatement == null)
+				throw new UnsupportedOperationException("No bulk loader: the driver is not MySQL Connector/J");
+			TextRowStream in = new TextRowStream(rows, false);
+			Drivers.invoke(driverStatement, st.unwrap(driverStatement), "setLocalInfileInputStream", 
+					new Class<?>[] { InputStream.class }, in);
+			st.execute("LOAD DATA LOCAL INFILE 'stream' INTO TABLE " + table + " CHARACTER SET utf8mb4"
+					+ " FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n'"
+					+ " (" + String.join(",", columns) + ")");
+			return st.getUpdateCount();
+		}
+	}
+
+	@Override
+	public String getLastIdStatement() {
+		return "SELECT LAST_INSERT_ID()";
+	}
+}
@@ -0,0 +1,68 @@
+package com.divirad.util.sql;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the pages of a table with keyset pagination, see {@link OpenDao#selectPage(Object, int)}. 
+ * Each page is selected when it is requested, after the last row of the page before
+ *
+ * @param <T> Class which fields represent the columns of a table.
+ */
+public class PageIterator<T> implements Iterator<ArrayList<T>> {
+	
+	/**
+	 * Selects the page after a row, e.g. <code>dao::selectPage</code>
+	 */
+	@FunctionalInterface
+	public interface PageSelector<T> {
+		ArrayList<T> selectPage(T afterKey, int limit);
+	}
+	
+	private final PageSelector<T> selector;
+	private final int limit;
+	
+	/**
+	 * The selected page that wasn't returned yet, <code>null</code> if the next page wasn't selected yet
+	 */
+	private ArrayList<T> next;
+	/**
+	 * Last row of the page returned before, <code>null</code> for the first page
+	 */
+	private T after;
+	private boolean done;
+	
+	/**
+	 * @param selector selects a page
+	 * @param limit maximum number of rows of a page
+	 */
+	public PageIterator(PageSelector<T> selector, int limit) {
+		if(limit <= 0) throw new IllegalArgumentException("limit must be positive");
+		this.selector = selector;
+		this.limit = limit;
+	}
+	
+	@Override
+	public boolean hasNext() {
+		if(next == null && !done) {
+			next = selector.selectPage(after, limit);
+			if(next == null || next.isEmpty()) {
+				next = null;
+				done = true;
+			}
+		}
+		return next != null;
+	}
+	
+	@Override
+	public ArrayList<T> next() {
+		if(!hasNext()) throw new NoSuchElementException();
+		ArrayList<T> page = next;
+		next = null;
+		after = page.get(page.size() - 1);
+		// a short page is the last one, no query for an empty page
+		if(page.size() < limit) done = true;
+		return page;
+	}
+}
@@ -0,0 +1,108 @@
+package com.divirad.util.sql;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Dialect of PostgreSQL, engine <code>postgresql</code>
+ */
+public class PostgreSqlDialect implements Dialect {
+
+	/**
+	 * The connection classes of the driver used by the bulk loader
+	 */
+	private static final String[] DRIVER_CONNECTIONS = { "org.postgresql.PGConnection" };
+
+	@Override
+	public String getEngine() {
+		return "postgresql";
+	}
+
+	/**
+	 * Quoted identifiers are case sensitive, so names are not quoted to match tables created without quotes
+	 */
+	@Override
+	public String getLeadingIdentifierSign() {
+		return "";
+	}
+
+	@Override
+	public String getTrailingIdentifierSign() {
+		return "";
+	}
+
+	/**
+	 * PostgreSQL has no integrated security in the url, it is configured on the server (e.g. GSSAPI or SSPI)
+	 */
+	@Override
+	public String getConnectionString(String hostname, String database, boolean useIntegratedSecurity, String params) {
+		return "jdbc:postgresql://" + hostname + "/" + database + "?" + params;
+	}
+
+	/**
+	 * The driver sends the number of parameters as a 16 bit value
+	 */
+	@Override
+	public int getMaxParameters() {
+		return 32767;
+	}
+
+	@Override
+	public int getMaxBatchRows() {
+		return 1000;
+	}
+
+	@Override
+	public int getStreamingFetchSize() {
+		return 1000;
+	}
+
+	/**
+	 * The driver only fetches in chunks if auto commit is off, otherwise it reads the whole result at once
+	 */
+	@Override
+	public boolean isStreamingInTransaction() {
+		return true;
+	}
+
+	/**
+	 * <code>INSERT ... ON CONFLICT (keys) DO UPDATE</code>, the keys need a unique index
+	 */
+	@Override
+	public String getUpsertStatement(String table, String[] columns, String[] keys, int rows) {
+		List<String> updated = Dialect.nonKeyColumns(columns, keys);
+		StringJoiner set = new StringJoiner(",");
+		for(String column : updated) set.add(column + "=EXCLUDED." + column);
+		return "INSERT INTO " + table + " (" + String.join(",", columns) + ") VALUES " 
+				+ Dialect.parameterRows(columns.length, rows) + " ON CONFLICT (" + String.join(",", keys) + ") " 
+				+ (updated.isEmpty() ? "DO NOTHING" : "DO UPDATE SET " + set);
+	}
+
+	@Override
+	public boolean supportsBulkLoad() {
+		return Drivers.find(getClass().getClassLoader(), DRIVER_CONNECTIONS) != null;
+	}
+
+	/**
+	 * <code>COPY ... FROM STDIN</code> with the copy API of the PostgreSQL driver
+	 */
+	@Override
+	public long bulkLoad(Connection con, String table, String[] columns, Iterator<Object[]> rows) throws SQLException {
+		Class<?> driverConnection = Drivers.findWrapped(con, DRIVER_CONNECTIONS);
+		if(driverConnection == null)
+			throw new UnsupportedOperationException("No bulk loader: the driver is not the PostgreSQL driver");
+		Object copyApi = Drivers.invoke(driverConnection, con.unwrap(driverConnection), "getCopyAPI", new Class<?>[0]);
+		TextRowStream in = new TextRowStream(rows, true);
+		return (Long) Drivers.invoke(copyApi.getClass(), copyApi, "copyIn", new Class<?>[] { String.class, InputStream.class }, 
+				"COPY " + table + " (" + String.join(",", columns) + ") FROM STDIN", in);
+	}
+
+	@Override
+	public String getLastIdStatement() {
+		return "SELECT lastval()";
+	}
+}
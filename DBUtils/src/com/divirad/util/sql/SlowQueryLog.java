@@ -0,0 +1,213 @@
+package com.divirad.util.sql;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs statements of a profile that take longer than a threshold, configured by the <code>slowQuery.</code>
+ * properties of the profile. Uses its own logger, so it can be configured independently of the debug output of
+ * {@link Database}
+ */
+final class SlowQueryLog {
+
+	private static final Logger log = LoggerFactory.getLogger(SlowQueryLog.class);
+
+	/**
+	 * Maximum number of parameters and characters of a string parameter in the log
+	 */
+	private static final int MAX_PARAMS = 20;
+	private static final int MAX_PARAM_LENGTH = 64;
+
+	/**
+	 * The parameters of a statement, recorded once after it was executed. The explain statement binds the recorded 
+	 * values instead of running <code>setParams</code> again on another thread
+	 */
+	static final class Parameters {
+		private final List<Method> methods = new ArrayList<>();
+		private final List<Object[]> arguments = new ArrayList<>();
+		private final Map<Integer, Object> values = new TreeMap<>();
+		private boolean streams;
+		private String error;
+
+		/**
+		 * Returns whether the parameters can be bound again. Streams and LOBs were consumed by the statement itself
+		 */
+		boolean isBindable() {
+			return error == null && !streams;
+		}
+
+		/**
+		 * Binds the recorded parameters to another statement
+		 */
+		void bind(PreparedStatement ps) throws SQLException {
+			for(int i = 0; i < methods.size(); i++) {
+				try {
+					methods.get(i).invoke(ps, arguments.get(i));
+				} catch(InvocationTargetException e) {
+					if(e.getCause() instanceof SQLException) throw (SQLException) e.getCause();
+					throw new IllegalStateException(e.getCause());
+				} catch(IllegalAccessException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}
+	}
+
+	private final long thresholdNanos;
+	private final double sampleRate;
+	private final boolean explain;
+
+	/**
+	 * @param thresholdMillis statements taking at least this long are logged, negative to log nothing
+	 * @param sampleRate part of the slow statements that is logged, between 0 and 1
+	 * @param explain whether the execution plan of logged statements should be logged as well
+	 */
+	SlowQueryLog(long thresholdMillis, double sampleRate, boolean explain) {
+		this.thresholdNanos = thresholdMillis < 0 ? -1 : thresholdMillis * 1_000_000;
+		this.sampleRate = sampleRate;
+		this.explain = explain;
+	}
+
+	/**
+	 * Returns whether a statement with the given execution time should be logged
+	 */
+	boolean isSlow(long elapsedNanos) {
+		if(thresholdNanos < 0 || elapsedNanos < thresholdNanos) return false;
+		return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+	}
+
+	/**
+	 * Returns whether the execution plan of a statement should be logged. Only plain DML statements can be explained
+	 */
+	boolean isExplain(String sql) {
+		if(!explain) return false;
+		String s = sql.stripLeading();
+		int end = 0;
+		while(end < s.length() && Character.isLetter(s.charAt(end))) end++;
+		switch(s.substring(0, end).toUpperCase()) {
+		case "SELECT": case "INSERT": case "UPDATE": case "DELETE": case "REPLACE": case "WITH":
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Logs a slow statement
+	 *
+	 * @param params the parameters of the statement, see {@link #record(Database.ISetParams)}
+	 */
+	void log(String sql, long elapsedNanos, int rows, Parameters params) {
+		log.warn("Slow statement: {} ms, {} rows, called from {}: {} {}",
+				elapsedNanos / 1_000_000, rows, findCaller(), sql, describe(params));
+	}
+
+	/**
+	 * Logs the execution plan of a slow statement
+	 *
+	 * @param rs result of the explain statement, see {@link Dialect#getExplainStatement(String)}
+	 */
+	void logPlan(String sql, ResultSet rs) throws SQLException {
+		StringBuilder sb = new StringBuilder();
+		ResultSetMetaData meta = rs.getMetaData();
+		StringJoiner header = new StringJoiner(" | ");
+		for(int i = 1; i <= meta.getColumnCount(); i++) header.add(meta.getColumnLabel(i));
+		sb.append(header);
+		while(rs.next()) {
+			StringJoiner row = new StringJoiner(" | ");
+			for(int i = 1; i <= meta.getColumnCount(); i++) row.add(String.valueOf(rs.getObject(i)));
+			sb.append(System.lineSeparator()).append(row);
+		}
+		log.warn("Execution plan of slow statement {}{}{}", sql, System.lineSeparator(), sb);
+	}
+
+	/**
+	 * Returns the first method on the stack outside of this package, usually the method of a Dao subclass
+	 * or the application code calling a Dao
+	 */
+	private static String findCaller() {
+		String pkg = SlowQueryLog.class.getPackageName();
+		return StackWalker.getInstance().walk(frames -> frames
+				.filter(f -> {
+					String cls = f.getClassName();
+					int dot = cls.lastIndexOf('.');
+					return !(dot > 0 && cls.substring(0, dot).equals(pkg)) && !cls.startsWith("java.");
+				})
+				.map(f -> f.getClassName() + "." + f.getMethodName() + ":" + f.getLineNumber())
+				.findFirst()
+				.orElse("unknown"));
+	}
+
+	/**
+	 * Records the parameters set by <code>setParams</code> on a dummy statement
+	 */
+	static Parameters record(Database.ISetParams setParams) {
+		Parameters params = new Parameters();
+		PreparedStatement recorder = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+					if(method.getName().startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+						params.methods.add(method);
+						params.arguments.add(args);
+						params.values.put((Integer) args[0], method.getName().equals("setNull") ? null : args[1]);
+						if(isStream(args[1])) params.streams = true;
+					}
+					Class<?> type = method.getReturnType();
+					if(type == boolean.class) return false;
+					if(type.isPrimitive() && type != void.class) return 0;
+					return null;
+				});
+		try {
+			setParams.run(recorder);
+		} catch(SQLException | RuntimeException e) {
+			params.error = e.toString();
+		}
+		return params;
+	}
+
+	private static boolean isStream(Object value) {
+		return value instanceof InputStream || value instanceof Reader || value instanceof Blob || value instanceof Clob;
+	}
+
+	private static String describe(Parameters params) {
+		if(params.error != null) return "[parameters unavailable: " + params.error + "]";
+		StringJoiner sj = new StringJoiner(", ", "[", "]");
+		int count = 0;
+		for(Map.Entry<Integer, Object> e : params.values.entrySet()) {
+			if(count++ == MAX_PARAMS) {
+				sj.add("... " + params.values.size() + " parameters");
+				break;
+			}
+			sj.add(e.getKey() + "=" + describe(e.getValue()));
+		}
+		return sj.toString();
+	}
+
+	private static String describe(Object value) {
+		if(value == null) return "NULL";
+		if(value instanceof byte[]) return "<" + ((byte[]) value).length + " bytes>";
+		if(isStream(value)) return "<stream>";
+		if(value instanceof String) {
+			String s = (String) value;
+			return "'" + (s.length() > MAX_PARAM_LENGTH ? s.substring(0, MAX_PARAM_LENGTH) + "..." : s) + "'";
+		}
+		return String.valueOf(value);
+	}
+}
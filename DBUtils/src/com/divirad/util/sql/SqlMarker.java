@@ -50,7 +50,29 @@ public class SqlMarker {
     @Target(ElementType.FIELD)
     public @interface IgnoreField {}
     
+    /**
+     * Marks a field as lazily loaded, e.g. a large <code>byte[]</code> column.
+     * Field is not read by the selects of the Dao, load it explicitly with <code>load(data, fieldName)</code>.
+     * Must not be a primitive or a primary key, <code>null</code> stands for not loaded. 
+     * Stream fields (<code>InputStream</code>, <code>Reader</code>, <code>Blob</code>, ...) are always lazy, 
+     * read them with <code>load(data, fieldName, reader)</code>
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.FIELD)
+    public @interface LazyField {}
+    
+    /**
+     * Marks a list field as joined objects of a one-to-n joinable table view.
+     * Field will not be used as column
+     */
     @Retention(RetentionPolicy.RUNTIME)
     @Target(ElementType.FIELD)
-    public @interface JoinField {}
+    public @interface JoinField {
+        /**
+         * Columns of the joined table referencing the primary keys of this table, split by comma in the order of the
+         * primary keys. If set, the joined objects of all selected rows are loaded together with a few
+         * <code>IN (...)</code> queries instead of calling getJoinObjects for every row
+         */
+        String foreignKey() default "";
+    }
 }
\ No newline at end of file
@@ -0,0 +1,250 @@
+package com.divirad.util.sql;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Dialect of Microsoft SQL Server, engine <code>sqlserver</code>
+ */
+public class SqlServerDialect implements Dialect {
+
+	/**
+	 * The connection classes of the driver used by the bulk loader
+	 */
+	private static final String[] DRIVER_CONNECTIONS = { "com.microsoft.sqlserver.jdbc.ISQLServerConnection" };
+
+	@Override
+	public String getEngine() {
+		return "sqlserver";
+	}
+
+	@Override
+	public String getLeadingIdentifierSign() {
+		return "";
+	}
+
+	@Override
+	public String getTrailingIdentifierSign() {
+		return "";
+	}
+
+	@Override
+	public String getConnectionString(String hostname, String database, boolean useIntegratedSecurity, String params) {
+		if(useIntegratedSecurity) return "jdbc:sqlserver://" + hostname + ";database=" + database + ";integratedSecurity=true" + params;
+		else return "jdbc:sqlserver://" + hostname + ";database=" + database + params;
+	}
+
+	/**
+	 * SQL Server allows 2100, a few are kept free for the driver
+	 */
+	@Override
+	public int getMaxParameters() {
+		return 2000;
+	}
+
+	/**
+	 * SQL Server allows at most 1000 rows in a VALUES list
+	 */
+	@Override
+	public int getMaxBatchRows() {
+		return 1000;
+	}
+
+	/**
+	 * SQL Server streams with adaptive response buffering and uses the fetch size as a hint
+	 */
+	@Override
+	public int getStreamingFetchSize() {
+		return 1000;
+	}
+
+	/**
+	 * No row value constructors, the keys are compared one by one
+	 */
+	@Override
+	public String getKeyListPredicate(String[] columns, int rows) {
+		if(columns.length == 1) return Dialect.super.getKeyListPredicate(columns, rows);
+		String match = "(" + String.join("=? AND ", columns) + "=?)";
+		StringBuilder sb = new StringBuilder("(");
+		for(int i = 0; i < rows; i++) sb.append(i == 0 ? "" : " OR ").append(match);
+		return sb.append(')').toString();
+	}
+
+	/**
+	 * No row value comparison, expanded to <code>(a&gt;? OR a=? AND (b&gt;? OR ...))</code>
+	 */
+	@Override
+	public String getKeysetPredicate(String[] columns) {
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < columns.length - 1; i++)
+			sb.append('(').append(columns[i]).append(">? OR ").append(columns[i]).append("=? AND ");
+		sb.append(columns[columns.length - 1]).append(">?");
+		for(int i = 0; i < columns.length - 1; i++) sb.append(')');
+		return sb.toString();
+	}
+
+	@Override
+	public int[] getKeysetParameters(int columns) {
+		int[] indices = new int[2 * columns - 1];
+		for(int i = 0; i < indices.length; i++) indices[i] = i / 2;
+		return indices;
+	}
+
+	/**
+	 * <code>MERGE</code> with <code>HOLDLOCK</code>, which keeps concurrent merges of the same key from both inserting
+	 */
+	@Override
+	public String getUpsertStatement(String table, String[] columns, String[] keys, int rows) {
+		List<String> updated = Dialect.nonKeyColumns(columns, keys);
+		StringJoiner on = new StringJoiner(" AND ");
+		for(String key : keys) on.add("target." + key + "=source." + key);
+		StringJoiner set = new StringJoiner(",");
+		for(String column : updated) set.add("target." + column + "=source." + column);
+		StringJoiner insert = new StringJoiner(",");
+		for(String column : columns) insert.add("source." + column);
+		return "MERGE INTO " + table + " WITH (HOLDLOCK) AS target USING (VALUES " 
+				+ Dialect.parameterRows(columns.length, rows) + ") AS source (" + String.join(",", columns) + ") ON " + on 
+				+ (updated.isEmpty() ? "" : " WHEN MATCHED THEN UPDATE SET " + set) 
+				+ " WHEN NOT MATCHED THEN INSERT (" + String.join(",", columns) + ") VALUES (" + insert + ");";
+	}
+
+	/**
+	 * Only valid with an <code>ORDER BY</code> clause
+	 */
+	@Override
+	public String getLimitClause(int rows) {
+		return " OFFSET 0 ROWS FETCH NEXT " + rows + " ROWS ONLY";
+	}
+
+	/**
+	 * Rewrites the insert to a <code>MERGE</code> that never matches and returns the generated values with 
+	 * <code>OUTPUT INSERTED</code>, as {@link java.sql.Statement#getGeneratedKeys()} only returns the identity of 
+	 * the last row. The order of the output rows isn't guaranteed, but unlike an <code>INSERT</code> a 
+	 * <code>MERGE</code> can output the columns of its source, so every row has its index in the VALUES list
+	 */
+	@Override
+	public String getGeneratedKeysStatement(String insertSql, String[] columns) {
+		int open = insertSql.indexOf('(');
+		int close = insertSql.indexOf(')', open);
+		String table = insertSql.substring("INSERT INTO ".length(), open).trim();
+		String[] inserted = insertSql.substring(open + 1, close).split(",");
+		int rows = (int) insertSql.chars().filter(c -> c == '?').count() / inserted.length;
+		String row = Dialect.parameterRow(inserted.length);
+		StringBuilder values = new StringBuilder();
+		for(int i = 0; i < rows; i++)
+			values.append(i == 0 ? "" : ",").append(row, 0, row.length() - 1).append(',').append(i).append(')');
+		StringJoiner source = new StringJoiner(",");
+		for(String column : inserted) source.add("source." + column);
+		StringJoiner output = new StringJoiner(",", " OUTPUT source." + GENERATED_ROW + ",", "");
+		for(String column : columns) output.add("INSERTED." + column);
+		return "MERGE INTO " + table + " USING (VALUES " + values + ") AS source (" + String.join(",", inserted) + "," 
+				+ GENERATED_ROW + ") ON 1=0 WHEN NOT MATCHED THEN INSERT (" + String.join(",", inserted) + ") VALUES (" 
+				+ source + ")" + output + ";";
+	}
+
+	@Override
+	public boolean supportsBulkLoad() {
+		return Drivers.find(getClass().getClassLoader(), DRIVER_CONNECTIONS) != null;
+	}
+
+	/**
+	 * The bulk copy API of the Microsoft JDBC driver. The rows are passed as a bulk record with the column types 
+	 * of the table, read from the metadata of an empty query
+	 */
+	@Override
+	public long bulkLoad(Connection con, String table, String[] columns, Iterator<Object[]> rows) throws SQLException {
+		Class<?> driverConnection = Drivers.findWrapped(con, DRIVER_CONNECTIONS);
+		ClassLoader loader = driverConnection == null ? null : driverConnection.getClassLoader();
+		Class<?> bulkCopy = loader == null ? null : Drivers.find(loader, "com.microsoft.sqlserver.jdbc.SQLServerBulkCopy");
+		Class<?> bulkData = loader == null ? null : Drivers.find(loader, 
+				"com.microsoft.sqlserver.jdbc.ISQLServerBulkData", "com.microsoft.sqlserver.jdbc.ISQLServerBulkRecord");
+		if(bulkCopy == null || bulkData == null)
+			throw new UnsupportedOperationException("No bulk loader: the driver is not the Microsoft JDBC driver");
+		
+		int[] types = new int[columns.length];
+		int[] precisions = new int[columns.length];
+		int[] scales = new int[columns.length];
+		try(Statement st = con.createStatement(); 
+				ResultSet rs = st.executeQuery("SELECT " + String.join(",", columns) + " FROM " + table + " WHERE 1=0")) {
+			ResultSetMetaData meta = rs.getMetaData();
+			for(int i = 0; i < columns.length; i++) {
+				types[i] = meta.getColumnType(i + 1);
+				precisions[i] = meta.getPrecision(i + 1);
+				scales[i] = meta.getScale(i + 1);
+			}
+		}
+		
+		Set<Integer> ordinals = new LinkedHashSet<>();
+		for(int i = 1; i <= columns.length; i++) ordinals.add(i);
+		long[] count = new long[1];
+		Object[][] current = new Object[1][];
+		Object record = Proxy.newProxyInstance(loader, new Class<?>[] { bulkData }, (proxy, method, args) -> {
+			switch(method.getName()) {
+			case "getColumnOrdinals": return ordinals;
+			case "getColumnName": return columns[(Integer) args[0] - 1];
+			case "getColumnType": return types[(Integer) args[0] - 1];
+			case "getPrecision": return precisions[(Integer) args[0] - 1];
+			case "getScale": return scales[(Integer) args[0] - 1];
+			case "next":
+				if(!rows.hasNext()) return false;
+				current[0] = rows.next();
+				count[0]++;
+				return true;
+			case "getRowData": return current[0];
+			case "hashCode": return System.identityHashCode(proxy);
+			case "equals": return proxy == args[0];
+			case "toString": return "bulk record of " + table;
+			}
+			Class<?> type = method.getReturnType();
+			if(type == boolean.class) return false;
+			if(type.isPrimitive() && type != void.class) return 0;
+			return null;
+		});
+		
+		Object copy;
+		try {
+			copy = bulkCopy.getConstructor(Connection.class).newInstance(con.unwrap(driverConnection));
+		} catch(ReflectiveOperationException e) {
+			throw new SQLException("Can't create bulk copy", e.getCause() != null ? e.getCause() : e);
+		}
+		try {
+			Drivers.invoke(bulkCopy, copy, "setDestinationTableName", new Class<?>[] { String.class }, table);
+			for(int i = 0; i < columns.length; i++)
+				Drivers.invoke(bulkCopy, copy, "addColumnMapping", new Class<?>[] { int.class, String.class }, i + 1, columns[i]);
+			Drivers.invoke(bulkCopy, copy, "writeToServer", new Class<?>[] { bulkData }, record);
+		} finally {
+			Drivers.invoke(bulkCopy, copy, "close", new Class<?>[0]);
+		}
+		return count[0];
+	}
+
+	/**
+	 * <code>@@IDENTITY</code> instead of <code>SCOPE_IDENTITY()</code>, which is empty outside of the batch that inserted
+	 */
+	@Override
+	public String getLastIdStatement() {
+		return "SELECT @@IDENTITY";
+	}
+
+	/**
+	 * The statement itself, executed with <code>SHOWPLAN_TEXT</code> on
+	 */
+	@Override
+	public String getExplainStatement(String sql) {
+		return sql;
+	}
+
+	@Override
+	public String getExplainMode(boolean enabled) {
+		return "SET SHOWPLAN_TEXT " + (enabled ? "ON" : "OFF");
+	}
+}
@@ -0,0 +1,100 @@
+package com.divirad.util.sql;
+
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Dialect of SQLite, engine <code>sqlite</code>. Mainly used to run and benchmark locally against an embedded database
+ */
+public class SqliteDialect implements Dialect {
+
+	@Override
+	public String getEngine() {
+		return "sqlite";
+	}
+
+	@Override
+	public String getLeadingIdentifierSign() {
+		return "\"";
+	}
+
+	@Override
+	public String getTrailingIdentifierSign() {
+		return "\"";
+	}
+
+	/**
+	 * The database is a file path or <code>:memory:</code>, the hostname is not used
+	 */
+	@Override
+	public String getConnectionString(String hostname, String database, boolean useIntegratedSecurity, String params) {
+		return "jdbc:sqlite:" + database + (params.isEmpty() ? "" : "?" + params);
+	}
+
+	/**
+	 * SQLITE_MAX_VARIABLE_NUMBER since SQLite 3.32
+	 */
+	@Override
+	public int getMaxParameters() {
+		return 32766;
+	}
+
+	/**
+	 * A VALUES list is a compound select, which is limited to 500 terms
+	 */
+	@Override
+	public int getMaxBatchRows() {
+		return 500;
+	}
+
+	/**
+	 * The driver steps through the rows anyway, the fetch size is ignored
+	 */
+	@Override
+	public int getStreamingFetchSize() {
+		return 0;
+	}
+
+	/**
+	 * Row values can't be compared with a list, the keys are compared one by one
+	 */
+	@Override
+	public String getKeyListPredicate(String[] columns, int rows) {
+		if(columns.length == 1) return Dialect.super.getKeyListPredicate(columns, rows);
+		String match = "(" + String.join("=? AND ", columns) + "=?)";
+		StringBuilder sb = new StringBuilder("(");
+		for(int i = 0; i < rows; i++) sb.append(i == 0 ? "" : " OR ").append(match);
+		return sb.append(')').toString();
+	}
+
+	/**
+	 * <code>INSERT ... ON CONFLICT (keys) DO UPDATE</code>, since SQLite 3.24
+	 */
+	@Override
+	public String getUpsertStatement(String table, String[] columns, String[] keys, int rows) {
+		List<String> updated = Dialect.nonKeyColumns(columns, keys);
+		StringJoiner set = new StringJoiner(",");
+		for(String column : updated) set.add(column + "=excluded." + column);
+		return "INSERT INTO " + table + " (" + String.join(",", columns) + ") VALUES " 
+				+ Dialect.parameterRows(columns.length, rows) + " ON CONFLICT (" + String.join(",", keys) + ") " 
+				+ (updated.isEmpty() ? "DO NOTHING" : "DO UPDATE SET " + set);
+	}
+
+	/**
+	 * Adds a <code>RETURNING</code> clause (SQLite 3.35), the driver only returns the rowid of the last row otherwise
+	 */
+	@Override
+	public String getGeneratedKeysStatement(String insertSql, String[] columns) {
+		return insertSql + " RETURNING " + String.join(",", columns);
+	}
+
+	@Override
+	public String getLastIdStatement() {
+		return "SELECT last_insert_rowid()";
+	}
+
+	@Override
+	public String getExplainStatement(String sql) {
+		return "EXPLAIN QUERY PLAN " + sql;
+	}
+}
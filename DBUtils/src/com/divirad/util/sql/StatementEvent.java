@@ -0,0 +1,56 @@
+package com.divirad.util.sql;
+
+/**
+ * Describes one executed statement, see {@link StatementListener}
+ */
+public final class StatementEvent {
+	
+	private final String sql;
+	private final long elapsedNanos;
+	private final long borrowNanos;
+	private final int rows;
+	private final boolean failed;
+	
+	StatementEvent(String sql, long elapsedNanos, long borrowNanos, int rows, boolean failed) {
+		this.sql = sql;
+		this.elapsedNanos = elapsedNanos;
+		this.borrowNanos = borrowNanos;
+		this.rows = rows;
+		this.failed = failed;
+	}
+	
+	/**
+	 * Returns the prepared sql string
+	 */
+	public String getSql() {
+		return sql;
+	}
+	
+	/**
+	 * Returns the time from getting the connection until the result was processed
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+	
+	/**
+	 * Returns the time waited for a connection of the pool
+	 */
+	public long getBorrowNanos() {
+		return borrowNanos;
+	}
+	
+	/**
+	 * Returns the number of rows mapped by a query or affected by a command
+	 */
+	public int getRows() {
+		return rows;
+	}
+	
+	/**
+	 * Returns if the statement threw an SQLException
+	 */
+	public boolean isFailed() {
+		return failed;
+	}
+}
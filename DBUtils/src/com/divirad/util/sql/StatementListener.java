@@ -0,0 +1,13 @@
+package com.divirad.util.sql;
+
+/**
+ * Gets notified about every statement executed by {@link Database}.
+ * Listeners are called on the executing thread, so they must be fast and thread safe.
+ * 
+ * @see Database#addStatementListener(StatementListener)
+ */
+@FunctionalInterface
+public interface StatementListener {
+	
+	void statementExecuted(StatementEvent event);
+}
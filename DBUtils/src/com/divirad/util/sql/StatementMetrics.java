@@ -0,0 +1,249 @@
+package com.divirad.util.sql;
+
+import java.beans.ConstructorProperties;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects count, latency histogram and rows of every sql string and the connection borrow times.
+ * Registered as MBean <code>com.divirad.util.sql:type=StatementMetrics</code> by {@link Database#enableMetrics()}.
+ * <p>
+ * Latencies are recorded in a histogram with 8 buckets per power of two, so percentiles are exact up to 12.5%.
+ */
+public class StatementMetrics implements StatementListener, StatementMetricsMXBean {
+	
+	/**
+	 * Statistics of statements with more than this number of different sql strings are merged into {@link #OTHER}
+	 */
+	private static final int MAX_STATEMENTS = 1000;
+	private static final String OTHER = "<other>";
+	private static final int BUCKETS = 488;
+	
+	/**
+	 * Snapshot of the statistics of one sql string
+	 */
+	public static class StatementStats {
+		private final String sql;
+		private final long count;
+		private final long errors;
+		private final long rows;
+		private final long totalMillis;
+		private final long p50Micros;
+		private final long p99Micros;
+		private final long maxMicros;
+		
+		@ConstructorProperties({ "sql", "count", "errors", "rows", "totalMillis", "p50Micros", "p99Micros", "maxMicros" })
+		public StatementStats(String sql, long count, long errors, long rows, long totalMillis, long p50Micros,
+				long p99Micros, long maxMicros) {
+			this.sql = sql;
+			this.count = count;
+			this.errors = errors;
+			this.rows = rows;
+			this.totalMillis = totalMillis;
+			this.p50Micros = p50Micros;
+			this.p99Micros = p99Micros;
+			this.maxMicros = maxMicros;
+		}
+		
+		public String getSql() { return sql; }
+		public long getCount() { return count; }
+		public long getErrors() { return errors; }
+		public long getRows() { return rows; }
+		public long getTotalMillis() { return totalMillis; }
+		public long getP50Micros() { return p50Micros; }
+		public long getP99Micros() { return p99Micros; }
+		public long getMaxMicros() { return maxMicros; }
+		
+		@Override
+		public String toString() {
+			return sql + ": count=" + count + ", errors=" + errors + ", rows=" + rows + ", total=" + totalMillis 
+					+ "ms, p50=" + p50Micros + "us, p99=" + p99Micros + "us, max=" + maxMicros + "us";
+		}
+	}
+	
+	/**
+	 * Snapshot of the connections of one pool. The numbers are -1 for a pool of the application
+	 */
+	public static class PoolStats {
+		private final String profileName;
+		private final int activeConnections;
+		private final int idleConnections;
+		
+		@ConstructorProperties({ "profileName", "activeConnections", "idleConnections" })
+		public PoolStats(String profileName, int activeConnections, int idleConnections) {
+			this.profileName = profileName;
+			this.activeConnections = activeConnections;
+			this.idleConnections = idleConnections;
+		}
+		
+		public String getProfileName() { return profileName; }
+		public int getActiveConnections() { return activeConnections; }
+		public int getIdleConnections() { return idleConnections; }
+		
+		@Override
+		public String toString() {
+			return profileName + ": active=" + activeConnections + ", idle=" + idleConnections;
+		}
+	}
+	
+	/**
+	 * Running statistics of one sql string
+	 */
+	private static class Recorder {
+		private final LongAdder count = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder rows = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+		
+		private void record(StatementEvent e) {
+			count.increment();
+			if(e.isFailed()) errors.increment();
+			if(e.getRows() > 0) rows.add(e.getRows());
+			long nanos = e.getElapsedNanos();
+			totalNanos.add(nanos);
+			maxNanos.accumulateAndGet(nanos, Math::max);
+			histogram.incrementAndGet(bucket(nanos));
+		}
+		
+		private StatementStats snapshot(String sql) {
+			long[] counts = new long[BUCKETS];
+			long total = 0;
+			for(int i = 0; i < BUCKETS; i++) {
+				counts[i] = histogram.get(i);
+				total += counts[i];
+			}
+			return new StatementStats(sql, count.sum(), errors.sum(), rows.sum(), totalNanos.sum() / 1_000_000,
+					percentile(counts, total, 0.5) / 1000, percentile(counts, total, 0.99) / 1000, maxNanos.get() / 1000);
+		}
+	}
+	
+	private final Map<String, Recorder> recorders = new ConcurrentHashMap<>();
+	private final LongAdder borrowCount = new LongAdder();
+	private final LongAdder borrowNanos = new LongAdder();
+	private final AtomicLong maxBorrowNanos = new AtomicLong();
+	
+	@Override
+	public void statementExecuted(StatementEvent event) {
+		Recorder recorder = recorders.get(event.getSql());
+		if(recorder == null) {
+			String key = recorders.size() < MAX_STATEMENTS ? event.getSql() : OTHER;
+			recorder = recorders.computeIfAbsent(key, k -> new Recorder());
+		}
+		recorder.record(event);
+		borrowCount.increment();
+		borrowNanos.add(event.getBorrowNanos());
+		maxBorrowNanos.accumulateAndGet(event.getBorrowNanos(), Math::max);
+	}
+	
+	@Override
+	public List<StatementStats> getStatements() {
+		List<StatementStats> result = new ArrayList<>();
+		for(Map.Entry<String, Recorder> e : recorders.entrySet())
+			result.add(e.getValue().snapshot(e.getKey()));
+		result.sort(Comparator.comparingLong(StatementStats::getCount).reversed());
+		return result;
+	}
+	
+	@Override
+	public long getStatementCount() {
+		long count = 0;
+		for(Recorder r : recorders.values())
+			count += r.count.sum();
+		return count;
+	}
+	
+	@Override
+	public long getBorrowCount() {
+		return borrowCount.sum();
+	}
+	
+	@Override
+	public long getAverageBorrowWaitMicros() {
+		long count = borrowCount.sum();
+		return count == 0 ? 0 : borrowNanos.sum() / count / 1000;
+	}
+	
+	@Override
+	public long getMaxBorrowWaitMicros() {
+		return maxBorrowNanos.get() / 1000;
+	}
+	
+	@Override
+	public List<PoolStats> getPools() {
+		List<PoolStats> result = new ArrayList<>();
+		for(String profileName : Database.getOpenPoolNames())
+			result.add(new PoolStats(profileName, Database.getActiveConnections(profileName), 
+					Database.getIdleConnections(profileName)));
+		return result;
+	}
+	
+	/**
+	 * Returns the number of borrowed connections of all open pools, pools of the application are left out
+	 */
+	@Override
+	public int getActiveConnections() {
+		int count = 0;
+		for(PoolStats pool : getPools())
+			count += Math.max(pool.getActiveConnections(), 0);
+		return count;
+	}
+	
+	/**
+	 * Returns the number of idle connections of all open pools, pools of the application are left out
+	 */
+	@Override
+	public int getIdleConnections() {
+		int count = 0;
+		for(PoolStats pool : getPools())
+			count += Math.max(pool.getIdleConnections(), 0);
+		return count;
+	}
+	
+	@Override
+	public void reset() {
+		recorders.clear();
+		borrowCount.reset();
+		borrowNanos.reset();
+		maxBorrowNanos.set(0);
+	}
+	
+	/**
+	 * Returns the histogram bucket of a value: values below 8 have their own bucket, 
+	 * larger values are split in 8 buckets per power of two
+	 */
+	static int bucket(long value) {
+		if(value < 8) return (int) Math.max(value, 0);
+		int exp = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exp - 3)) & 7;
+		return ((exp - 2) << 3) | sub;
+	}
+	
+	/**
+	 * Returns the largest value of a bucket
+	 */
+	static long upperBound(int bucket) {
+		if(bucket < 8) return bucket;
+		int exp = (bucket >> 3) + 2;
+		long lower = (long) (8 | (bucket & 7)) << (exp - 3);
+		return lower + (1L << (exp - 3)) - 1;
+	}
+	
+	private static long percentile(long[] counts, long total, double p) {
+		if(total == 0) return 0;
+		long rank = (long) Math.ceil(total * p);
+		long seen = 0;
+		for(int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if(seen >= rank) return upperBound(i);
+		}
+		return upperBound(counts.length - 1);
+	}
+}
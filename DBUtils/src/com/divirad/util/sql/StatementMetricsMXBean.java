@@ -0,0 +1,39 @@
+package com.divirad.util.sql;
+
+import java.util.List;
+
+/**
+ * Management interface of {@link StatementMetrics}
+ */
+public interface StatementMetricsMXBean {
+	
+	/**
+	 * Returns the statistics of every sql string, the statement executed most often first
+	 */
+	List<StatementMetrics.StatementStats> getStatements();
+	
+	long getStatementCount();
+	
+	long getBorrowCount();
+	
+	long getAverageBorrowWaitMicros();
+	
+	long getMaxBorrowWaitMicros();
+	
+	/**
+	 * Returns the connections of every open pool, including the pools of other profiles and of replicas
+	 */
+	List<StatementMetrics.PoolStats> getPools();
+	
+	/**
+	 * Returns the number of borrowed connections of all open pools
+	 */
+	int getActiveConnections();
+	
+	/**
+	 * Returns the number of idle connections of all open pools
+	 */
+	int getIdleConnections();
+	
+	void reset();
+}
@@ -0,0 +1,109 @@
+package com.divirad.util.sql;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Serializes rows to the tab separated text format read by <code>LOAD DATA</code> (MySQL) and <code>COPY</code> 
+ * (PostgreSQL): one line per row, <code>\N</code> for NULL and backslash escapes for tabs, line breaks and 
+ * backslashes. The rows are serialized while the stream is read, so no more than one row is held in memory
+ */
+final class TextRowStream extends InputStream {
+	
+	private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+	
+	private final Iterator<Object[]> rows;
+	private final boolean hexBinary;
+	
+	private byte[] buffer = new byte[1024];
+	private int pos;
+	private int length;
+	
+	/**
+	 * @param rows the values of the rows, in the order of the loaded columns
+	 * @param hexBinary true: write byte arrays as <code>\\x</code> followed by hex digits (PostgreSQL bytea), 
+	 *                  false: write them as escaped raw bytes (MySQL)
+	 */
+	TextRowStream(Iterator<Object[]> rows, boolean hexBinary) {
+		this.rows = rows;
+		this.hexBinary = hexBinary;
+	}
+	
+	@Override
+	public int read() {
+		if(!fill()) return -1;
+		return buffer[pos++] & 0xFF;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if(len == 0) return 0;
+		if(!fill()) return -1;
+		int n = Math.min(len, length - pos);
+		System.arraycopy(buffer, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+	
+	/**
+	 * Serializes the next row if the current one was read completely
+	 * 
+	 * @return false at the end of the rows
+	 */
+	private boolean fill() {
+		while(pos == length) {
+			if(!rows.hasNext()) return false;
+			pos = 0;
+			length = 0;
+			Object[] row = rows.next();
+			for(int i = 0; i < row.length; i++) {
+				if(i > 0) put('\t');
+				writeValue(row[i]);
+			}
+			put('\n');
+		}
+		return true;
+	}
+	
+	private void writeValue(Object value) {
+		if(value == null) {
+			put('\\');
+			put('N');
+		} else if(value instanceof Boolean) {
+			put((Boolean) value ? '1' : '0');
+		} else if(value instanceof byte[]) {
+			byte[] bytes = (byte[]) value;
+			if(hexBinary) {
+				put('\\');
+				put('\\');
+				put('x');
+				for(byte b : bytes) {
+					put(HEX[(b >> 4) & 0xF]);
+					put(HEX[b & 0xF]);
+				}
+			} else {
+				for(byte b : bytes) writeEscaped(b);
+			}
+		} else {
+			for(byte b : value.toString().getBytes(StandardCharsets.UTF_8)) writeEscaped(b);
+		}
+	}
+	
+	private void writeEscaped(byte b) {
+		switch(b) {
+		case '\\': put('\\'); put('\\'); break;
+		case '\t': put('\\'); put('t'); break;
+		case '\n': put('\\'); put('n'); break;
+		case '\r': put('\\'); put('r'); break;
+		case 0: put('\\'); put('0'); break;
+		default: put(b);
+		}
+	}
+	
+	private void put(int b) {
+		if(length == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		buffer[length++] = (byte) b;
+	}
+}
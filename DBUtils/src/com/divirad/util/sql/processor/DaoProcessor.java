@@ -0,0 +1,420 @@
+package com.divirad.util.sql.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+import com.divirad.util.sql.SqlMarker;
+
+/**
+ * Annotation processor generating a reflection-free Dao for every class marked with {@link SqlMarker.TableView}.
+ * <p>
+ * For a class <code>Person</code> the class <code>PersonGeneratedDao</code> is generated in the same package. It extends
+ * {@link com.divirad.util.sql.OpenDao} and passes plain getter/setter and JDBC code for every field to the
+ * accessor based constructor, so neither the fields nor the constructor of <code>Person</code> are accessed via
+ * reflection and no <code>setAccessible</code> is needed.
+ * <p>
+ * Fields must not be private, unless they have a non-private getter (<code>getX</code>/<code>isX</code>) and setter
+ * (<code>setX</code>). If the class is one-to-n joinable, list fields with a
+ * {@link SqlMarker.JoinField#foreignKey()} are loaded for all rows together like in the Daos created from the class.
+ * For every other list field the generated Dao is abstract and declares a <code>load&lt;Field&gt;(T parent)</code>
+ * method that replaces {@code getJoinObjects}.
+ * <p>
+ * Use by adding DBUtils to the annotation processor path, e.g. <code>javac -processorpath DBUtils.jar</code>.
+ */
+@SupportedAnnotationTypes("com.divirad.util.sql.SqlMarker.TableView")
+public class DaoProcessor extends AbstractProcessor {
+
+	/**
+	 * Name of the JDBC getter/setter suffix, class literal and boxed type of each supported field type
+	 */
+	private static class ColumnType {
+		private final String jdbc;
+		private final String classLiteral;
+		private final String boxed;
+		private final boolean nullable;
+		/**
+		 * Constant of java.sql.Types bound for null values, null to pass null to the typed setter
+		 */
+		private final String nullType;
+		/**
+		 * Type read by the typed getter and the conversions from and to the field, null if it is the field type
+		 */
+		private final String jdbcType;
+		private final String toJdbc;
+		private final String fromJdbc;
+
+		private ColumnType(String jdbc, String classLiteral, String boxed, boolean nullable) {
+			this(jdbc, classLiteral, boxed, nullable, null, null, null, null);
+		}
+
+		private ColumnType(String jdbc, String classLiteral, String boxed, boolean nullable, String nullType,
+				String jdbcType, String toJdbc, String fromJdbc) {
+			this.jdbc = jdbc;
+			this.classLiteral = classLiteral;
+			this.boxed = boxed;
+			this.nullable = nullable;
+			this.nullType = nullType;
+			this.jdbcType = jdbcType;
+			this.toJdbc = toJdbc;
+			this.fromJdbc = fromJdbc;
+		}
+
+		private static ColumnType stream(String jdbc, String type, String nullType) {
+			return new ColumnType(jdbc, type + ".class", type, true, "java.sql.Types." + nullType, null, null, null);
+		}
+	}
+
+	/**
+	 * Code to read and write one field of the entity
+	 */
+	private static class FieldCode {
+		private String name;
+		private String get;
+		private String setPrefix;
+		private String setSuffix;
+
+		private String set(String value) {
+			return setPrefix + value + setSuffix;
+		}
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (Element element : roundEnv.getElementsAnnotatedWith(SqlMarker.TableView.class)) {
+			if (element.getKind() != ElementKind.CLASS) {
+				error(element, "SqlMarker.TableView can only be used on classes");
+				continue;
+			}
+			TypeElement type = (TypeElement) element;
+			if (!isValid(type))
+				continue;
+			try {
+				generate(type);
+			} catch (IOException e) {
+				error(type, "Can't write generated Dao: " + e.getMessage());
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks the same conditions the Dao constructor checks at runtime
+	 */
+	private boolean isValid(TypeElement type) {
+		boolean valid = true;
+		if (!type.getModifiers().contains(Modifier.FINAL)) {
+			error(type, "Can't use class: must be final");
+			valid = false;
+		}
+		if (!types().isSameType(type.getSuperclass(),
+				processingEnv.getElementUtils().getTypeElement("java.lang.Object").asType())) {
+			error(type, "Can't use class: must not extend another class");
+			valid = false;
+		}
+		if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) {
+			error(type, "Can't use class: nested classes must be static");
+			valid = false;
+		}
+		if (type.getModifiers().contains(Modifier.PRIVATE)) {
+			error(type, "Can't use class: must not be private");
+			valid = false;
+		}
+		boolean hasDefaultConstructor = false;
+		for (ExecutableElement c : ElementFilter.constructorsIn(type.getEnclosedElements()))
+			if (c.getParameters().isEmpty() && c.getModifiers().contains(Modifier.PUBLIC))
+				hasDefaultConstructor = true;
+		if (!hasDefaultConstructor) {
+			error(type, "Can't use class: No default constructor");
+			valid = false;
+		}
+		return valid;
+	}
+
+	private void generate(TypeElement type) throws IOException {
+		SqlMarker.TableView annotation = type.getAnnotation(SqlMarker.TableView.class);
+		String entity = type.getQualifiedName().toString();
+		String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		String daoName = generatedName(type);
+
+		List<String> accessors = new ArrayList<>();
+		List<String> loadMethods = new ArrayList<>();
+		List<String> joins = new ArrayList<>();
+		for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+			if (field.getModifiers().contains(Modifier.STATIC) || field.getAnnotation(SqlMarker.IgnoreField.class) != null)
+				continue;
+			FieldCode code = fieldCode(type, field);
+			if (code == null)
+				continue;
+
+			List<String> flags = new ArrayList<>();
+			if (field.getAnnotation(SqlMarker.PrimaryKey.class) != null)
+				flags.add("FieldAccessor.PRIMARY_KEY");
+			if (field.getAnnotation(SqlMarker.AutomaticValue.class) != null)
+				flags.add("FieldAccessor.AUTOMATIC_VALUE");
+			if (field.getAnnotation(SqlMarker.JoinField.class) != null)
+				flags.add("FieldAccessor.JOIN_FIELD");
+			if (field.getAnnotation(SqlMarker.LazyField.class) != null)
+				flags.add("FieldAccessor.LAZY");
+
+			TypeMirror fieldType = field.asType();
+			ColumnType columnType = columnType(fieldType);
+			StringBuilder sb = new StringBuilder();
+			sb.append("            FieldAccessor.<").append(entity).append(">of(\"").append(code.name).append("\", ");
+			if (columnType != null) {
+				sb.append(columnType.classLiteral).append(", ").append(flags.isEmpty() ? "0" : String.join(" | ", flags))
+						.append(",\n");
+				sb.append("                    d -> ").append(code.get).append(", (d, v) -> ")
+						.append(code.set("(" + columnType.boxed + ") v")).append(",\n");
+				if (columnType.nullable && !fieldType.getKind().isPrimitive())
+					sb.append("                    (ps, i, d) -> { ").append(columnType.boxed).append(" v = ").append(code.get)
+							.append("; if (v == null) ")
+							.append(columnType.nullType == null ? "ps.setObject(i, null)" : "ps.setNull(i, " + columnType.nullType + ")")
+							.append("; else ps.set").append(columnType.jdbc).append("(i, ")
+							.append(columnType.toJdbc == null ? "v" : String.format(columnType.toJdbc, "v")).append("); },\n");
+				else
+					sb.append("                    (ps, i, d) -> ps.set").append(columnType.jdbc).append("(i, ")
+							.append(code.get).append("),\n");
+				if (columnType.fromJdbc == null)
+					sb.append("                    (rs, i, d) -> ").append(code.set("rs.get" + columnType.jdbc + "(i)"))
+							.append(")");
+				else
+					sb.append("                    (rs, i, d) -> { ").append(columnType.jdbcType).append(" v = rs.get")
+							.append(columnType.jdbc).append("(i); ")
+							.append(code.set("v == null ? null : " + String.format(columnType.fromJdbc, "v"))).append("; })");
+			} else {
+				String erasure = types().erasure(fieldType).toString();
+				sb.append(erasure).append(".class, ").append(flags.isEmpty() ? "0" : String.join(" | ", flags))
+						.append(",\n");
+				sb.append("                    d -> ").append(code.get).append(", (d, v) -> ")
+						.append(code.set("(" + fieldType + ") v")).append(",\n");
+				sb.append("                    (ps, i, d) -> { throw new IllegalStateException(\"Unknown type of field: ")
+						.append(code.name).append(", ").append(erasure).append("\"); },\n");
+				SqlMarker.JoinField join = field.getAnnotation(SqlMarker.JoinField.class);
+				if (annotation.isOneToNJoinable() && isList(fieldType) && join != null && !join.foreignKey().isEmpty()) {
+					// loaded for all rows together by the Dao, like the join fields of Daos created from the class
+					sb.append("                    (rs, i, d) -> { throw new IllegalStateException(\"Unknown type of field\"); })");
+					String joined = joinedClass(fieldType);
+					if (joined == null)
+						error(field, "Can't use join field " + code.name + ": must declare the joined class as type argument");
+					else
+						joins.add("        joinByForeignKey(\"" + code.name + "\", " + joined + ".class, \""
+								+ escape(join.foreignKey()) + "\");");
+				} else if (annotation.isOneToNJoinable() && isList(fieldType)) {
+					String load = "load" + Character.toUpperCase(code.name.charAt(0)) + code.name.substring(1);
+					// the load methods are instance methods, so the extractor is replaced after the super constructor
+					sb.append("                    (rs, i, d) -> { throw new IllegalStateException(\"Unknown type of field\"); })");
+					joins.add("        this.rowAccessors[" + accessors.size() + "] = this.rowAccessors[" + accessors.size()
+							+ "].withExtractor((rs, i, d) -> " + code.set(load + "(d)") + ");");
+					loadMethods.add("    /**\n"
+							+ "     * Loads the joined objects of {@link " + entity + "#" + field.getSimpleName() + "}\n"
+							+ "     */\n"
+							+ "    protected abstract " + fieldType + " " + load + "(" + entity + " parent);\n");
+				} else {
+					sb.append("                    (rs, i, d) -> { throw new IllegalStateException(\"Unknown type of field\"); })");
+				}
+			}
+			accessors.add(sb.toString());
+		}
+
+		boolean isAbstract = !loadMethods.isEmpty();
+		try (PrintWriter w = new PrintWriter(processingEnv.getFiler()
+				.createSourceFile(packageName.isEmpty() ? daoName : packageName + "." + daoName, type).openWriter())) {
+			if (!packageName.isEmpty()) {
+				w.println("package " + packageName + ";");
+				w.println();
+			}
+			w.println("import com.divirad.util.sql.FieldAccessor;");
+			w.println("import com.divirad.util.sql.OpenDao;");
+			w.println();
+			w.println("/**");
+			w.println(" * Reflection-free Dao for {@link " + entity + "}.");
+			w.println(" * Generated by " + DaoProcessor.class.getName() + ", do not edit.");
+			w.println(" */");
+			w.println("public " + (isAbstract ? "abstract " : "") + "class " + daoName + " extends OpenDao<" + entity + "> {");
+			w.println();
+			w.println("    " + (isAbstract ? "protected " : "public ") + daoName + "() {");
+			w.println("        this(null);");
+			w.println("    }");
+			w.println();
+			w.println("    /**");
+			w.println("     * @param profileName name of the database profile used by this Dao, null for the active profile");
+			w.println("     */");
+			w.println("    " + (isAbstract ? "protected " : "public ") + daoName + "(String profileName) {");
+			w.println("        super(" + entity + ".class, " + entity + "::new, profileName, \"" + escape(annotation.tableName()) + "\", "
+					+ annotation.isWholeTable() + ", " + annotation.isOneToNJoinable() + ", fields());");
+			for (String join : joins)
+				w.println(join);
+			w.println("    }");
+			w.println();
+			w.println("    @SuppressWarnings({ \"unchecked\", \"rawtypes\" })");
+			w.println("    private static FieldAccessor<" + entity + ">[] fields() {");
+			w.println("        return new FieldAccessor[] {");
+			w.println(String.join(",\n", accessors));
+			w.println("        };");
+			w.println("    }");
+			w.println();
+			w.println("    @Override");
+			w.println("    protected <J> java.util.ArrayList<J> getJoinObjects(java.lang.reflect.Field f, " + entity
+					+ " result, java.lang.reflect.Field[] primaryKeys) {");
+			w.println("        throw new UnsupportedOperationException(\"Generated Daos load join fields with their load methods\");");
+			w.println("    }");
+			for (String loadMethod : loadMethods) {
+				w.println();
+				w.print(loadMethod);
+			}
+			w.println("}");
+		}
+	}
+
+	/**
+	 * Returns the name of the generated Dao, e.g. <code>PersonGeneratedDao</code> or
+	 * <code>Outer_PersonGeneratedDao</code> for nested classes
+	 */
+	private static String generatedName(TypeElement type) {
+		String name = type.getSimpleName().toString();
+		Element enclosing = type.getEnclosingElement();
+		while (!(enclosing instanceof PackageElement)) {
+			name = enclosing.getSimpleName() + "_" + name;
+			enclosing = enclosing.getEnclosingElement();
+		}
+		return name + "GeneratedDao";
+	}
+
+	/**
+	 * Creates the code accessing the field directly or via its getter and setter if the field is private
+	 *
+	 * @return the code or <code>null</code> if the field can't be accessed
+	 */
+	private FieldCode fieldCode(TypeElement type, VariableElement field) {
+		FieldCode code = new FieldCode();
+		code.name = field.getSimpleName().toString();
+		if (!field.getModifiers().contains(Modifier.PRIVATE)) {
+			code.get = "d." + code.name;
+			code.setPrefix = "d." + code.name + " = ";
+			code.setSuffix = "";
+			return code;
+		}
+		String property = Character.toUpperCase(code.name.charAt(0)) + code.name.substring(1);
+		String getter = null, setter = null;
+		for (ExecutableElement m : ElementFilter.methodsIn(type.getEnclosedElements())) {
+			if (m.getModifiers().contains(Modifier.PRIVATE) || m.getModifiers().contains(Modifier.STATIC))
+				continue;
+			String name = m.getSimpleName().toString();
+			if (m.getParameters().isEmpty() && types().isSameType(m.getReturnType(), field.asType())
+					&& (name.equals("get" + property) || name.equals("is" + property)))
+				getter = name;
+			else if (m.getParameters().size() == 1 && name.equals("set" + property)
+					&& types().isSameType(m.getParameters().get(0).asType(), field.asType()))
+				setter = name;
+		}
+		if (getter == null || setter == null) {
+			error(field, "Can't access field: " + code.name + " is private and has no getter and setter");
+			return null;
+		}
+		code.get = "d." + getter + "()";
+		code.setPrefix = "d." + setter + "(";
+		code.setSuffix = ")";
+		return code;
+	}
+
+	/**
+	 * Returns the JDBC mapping of a field type, the same types that {@link com.divirad.util.sql.FieldAccessor}
+	 * supports at runtime
+	 *
+	 * @return the mapping or <code>null</code> if the type is not a column type
+	 */
+	private static ColumnType columnType(TypeMirror type) {
+		switch (type.getKind()) {
+		case INT: return new ColumnType("Int", "int.class", "java.lang.Integer", false);
+		case LONG: return new ColumnType("Long", "long.class", "java.lang.Long", false);
+		case BOOLEAN: return new ColumnType("Boolean", "boolean.class", "java.lang.Boolean", false);
+		case BYTE: return new ColumnType("Byte", "byte.class", "java.lang.Byte", false);
+		case FLOAT: return new ColumnType("Float", "float.class", "java.lang.Float", false);
+		case DOUBLE: return new ColumnType("Double", "double.class", "java.lang.Double", false);
+		case ARRAY:
+			if (((ArrayType) type).getComponentType().getKind() == TypeKind.BYTE)
+				return new ColumnType("Bytes", "byte[].class", "byte[]", false);
+			return null;
+		case DECLARED:
+			String name = ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+			switch (name) {
+			case "java.lang.Integer": return new ColumnType("Int", "java.lang.Integer.class", name, true);
+			case "java.lang.Long": return new ColumnType("Long", "java.lang.Long.class", name, true);
+			case "java.lang.Boolean": return new ColumnType("Boolean", "java.lang.Boolean.class", name, true);
+			case "java.lang.Byte": return new ColumnType("Byte", "java.lang.Byte.class", name, true);
+			case "java.lang.Float": return new ColumnType("Float", "java.lang.Float.class", name, true);
+			case "java.lang.Double": return new ColumnType("Double", "java.lang.Double.class", name, true);
+			case "java.lang.String": return new ColumnType("String", "java.lang.String.class", name, false);
+			case "java.sql.Date": return new ColumnType("Date", "java.sql.Date.class", name, false);
+			case "java.sql.Time": return new ColumnType("Time", "java.sql.Time.class", name, false);
+			case "java.sql.Timestamp": return new ColumnType("Timestamp", "java.sql.Timestamp.class", name, false);
+			case "java.io.InputStream": return ColumnType.stream("BinaryStream", name, "LONGVARBINARY");
+			case "java.io.Reader": return ColumnType.stream("CharacterStream", name, "LONGVARCHAR");
+			case "java.sql.Blob": return ColumnType.stream("Blob", name, "BLOB");
+			case "java.sql.Clob": return ColumnType.stream("Clob", name, "CLOB");
+			case "java.nio.channels.ReadableByteChannel":
+				return new ColumnType("BinaryStream", name + ".class", name, true, "java.sql.Types.LONGVARBINARY",
+						"java.io.InputStream", "java.nio.channels.Channels.newInputStream(%s)",
+						"java.nio.channels.Channels.newChannel(%s)");
+			default: return null;
+			}
+		default:
+			return null;
+		}
+	}
+
+	private boolean isList(TypeMirror type) {
+		TypeElement list = processingEnv.getElementUtils().getTypeElement("java.util.List");
+		return types().isAssignable(types().erasure(type), types().erasure(list.asType()));
+	}
+
+	/**
+	 * Returns the erased type argument of a join field, <code>null</code> if it has none
+	 */
+	private String joinedClass(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED || ((DeclaredType) type).getTypeArguments().size() != 1)
+			return null;
+		TypeMirror argument = ((DeclaredType) type).getTypeArguments().get(0);
+		return argument.getKind() == TypeKind.DECLARED ? types().erasure(argument).toString() : null;
+	}
+
+	private static String escape(String s) {
+		return s.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	private Types types() {
+		return processingEnv.getTypeUtils();
+	}
+
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+}
@@ -2,7 +2,11 @@ module DBUtils {
 	requires transitive java.sql;
 	requires org.apache.commons.dbcp2;
 	requires org.slf4j;
+	requires java.management;
 	requires transitive java.desktop;
+	requires static java.compiler;
 	
 	exports com.divirad.util.sql;
-}
\ No newline at end of file
+	
+	provides javax.annotation.processing.Processor with com.divirad.util.sql.processor.DaoProcessor;
+}
@@ -0,0 +1,39 @@
+#!/bin/sh
+# Builds and runs the benchmarks without Eclipse (JDK 11 or newer).
+#
+#   ./bench.sh fetch          downloads the dependencies to ./lib
+#   ./bench.sh [JMH options]  compiles DBUtils and the benchmarks to ./out and runs them,
+#                             e.g. ./bench.sh Crud -p profile=mysql -f 1
+set -e
+cd "$(dirname "$0")"
+
+LIB=lib
+OUT=out
+MAVEN=https://repo1.maven.org/maven2
+JARS="org/openjdk/jmh/jmh-core/1.37/jmh-core-1.37.jar
+org/openjdk/jmh/jmh-generator-annprocess/1.37/jmh-generator-annprocess-1.37.jar
+net/sf/jopt-simple/jopt-simple/5.0.4/jopt-simple-5.0.4.jar
+org/apache/commons/commons-math3/3.6.1/commons-math3-3.6.1.jar
+com/h2database/h2/2.2.224/h2-2.2.224.jar
+org/apache/commons/commons-dbcp2/2.12.0/commons-dbcp2-2.12.0.jar
+org/apache/commons/commons-pool2/2.12.0/commons-pool2-2.12.0.jar
+commons-logging/commons-logging/1.3.0/commons-logging-1.3.0.jar
+org/slf4j/slf4j-api/2.0.13/slf4j-api-2.0.13.jar
+org/slf4j/slf4j-simple/2.0.13/slf4j-simple-2.0.13.jar"
+
+if [ "$1" = "fetch" ]; then
+	mkdir -p $LIB
+	for jar in $JARS; do
+		[ -f "$LIB/$(basename $jar)" ] || curl -sSfL -o "$LIB/$(basename $jar)" "$MAVEN/$jar"
+	done
+	exit 0
+fi
+
+rm -rf $OUT
+mkdir -p $OUT/dbutils $OUT/bench
+javac -nowarn --release 11 -proc:none -d $OUT/dbutils -cp "$LIB/*" \
+	$(find ../DBUtils/src -name '*.java' ! -name module-info.java)
+javac -nowarn --release 11 -d $OUT/bench -cp "$OUT/dbutils:$LIB/*" \
+	-processorpath "$LIB/jmh-generator-annprocess-1.37.jar:$LIB/jmh-core-1.37.jar" \
+	$(find src -name '*.java')
+exec java -cp "$OUT/bench:$OUT/dbutils:$LIB/*" com.divirad.util.sql.bench.BenchmarkRunner "$@"
@@ -0,0 +1,40 @@
+package com.divirad.util.sql.bench;
+
+import java.lang.reflect.Field;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+import com.divirad.util.sql.OpenDao;
+
+/**
+ * Makes the single steps of {@link OpenDao} callable from the benchmarks
+ */
+public class BenchDao extends OpenDao<BenchRow> {
+
+	public BenchDao() {
+		super(BenchRow.class);
+	}
+	
+	public BenchRow map(ResultSet rs) throws SQLException {
+		return convertCurrentFromResultSet(rs);
+	}
+	
+	public int bind(PreparedStatement ps, BenchRow row, int index) throws SQLException {
+		return setParams(ps, row, notAutomatedAccessors, index);
+	}
+	
+	public String getInsertSql() {
+		return sql_insert;
+	}
+	
+	public String getMultiRowInsertSql(int rows) {
+		return multiRowSql(sql_insert, rows);
+	}
+
+	@Override
+	protected <J> ArrayList<J> getJoinObjects(Field f, BenchRow result, Field[] primaryKeys) {
+		return null;
+	}
+}
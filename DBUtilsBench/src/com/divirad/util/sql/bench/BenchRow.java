@@ -0,0 +1,47 @@
+package com.divirad.util.sql.bench;
+
+import java.sql.Timestamp;
+
+import com.divirad.util.sql.Database;
+import com.divirad.util.sql.SqlMarker;
+
+/**
+ * Row of the benchmark table with one column of each commonly used type
+ */
+@SqlMarker.TableView(tableName = "bench_row", isWholeTable = true, isOneToNJoinable = false)
+public final class BenchRow {
+
+	@SqlMarker.PrimaryKey
+	public int id;
+	public String name;
+	public long amount;
+	public double price;
+	public boolean active;
+	public Timestamp created;
+	
+	public BenchRow() {}
+	
+	/**
+	 * Creates the row with the given id. The values only depend on the id, so every run uses the same data
+	 */
+	public static BenchRow of(int id) {
+		BenchRow row = new BenchRow();
+		row.id = id;
+		row.name = "row " + id;
+		row.amount = id * 31L;
+		row.price = id / 4.0;
+		row.active = id % 2 == 0;
+		row.created = new Timestamp(1_600_000_000_000L + id * 1000L);
+		return row;
+	}
+	
+	/**
+	 * Creates the table of the rows in the database of the active profile, dropping an existing one
+	 */
+	public static void createTable() {
+		String table = Database.getLeadingIdentifierSign() + "bench_row" + Database.getTrailingIdentifierSign();
+		Database.execute("DROP TABLE IF EXISTS " + table, ps -> {});
+		Database.execute("CREATE TABLE " + table + " (id INT PRIMARY KEY, name VARCHAR(64), amount BIGINT, "
+				+ "price DOUBLE, active BOOLEAN, created TIMESTAMP)", ps -> {});
+	}
+}
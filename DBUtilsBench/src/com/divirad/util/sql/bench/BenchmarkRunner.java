@@ -0,0 +1,26 @@
+package com.divirad.util.sql.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of this package with allocation profiling. Accepts the usual JMH command line, 
+ * e.g. <code>Crud -p profile=mysql -f 1</code>
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.parent(cmd)
+				.addProfiler(GCProfiler.class);
+		if(cmd.getIncludes().isEmpty())
+			options.include(BenchmarkRunner.class.getPackageName() + ".*Benchmark");
+		new Runner(options.build()).run();
+	}
+}
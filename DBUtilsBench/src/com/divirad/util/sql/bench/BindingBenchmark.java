@@ -0,0 +1,70 @@
+package com.divirad.util.sql.bench;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.divirad.util.sql.Database;
+
+/**
+ * Binds the parameters of a multi row INSERT without executing it
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class BindingBenchmark {
+
+	@Param({"1", "100", "1000"})
+	public int rows;
+	
+	private BenchDao dao;
+	private BenchRow[] data;
+	private Connection con;
+	private PreparedStatement ps;
+	
+	@Setup
+	public void setup() throws SQLException {
+		Database.loadProfile("mysql");
+		dao = new BenchDao();
+		data = new BenchRow[rows];
+		for(int i = 0; i < rows; i++) data[i] = BenchRow.of(i);
+		// a connection of its own, the statement is prepared once and never executed
+		con = DriverManager.getConnection("jdbc:h2:mem:bench_binding;MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+		con.createStatement().execute("CREATE TABLE bench_row (id INT PRIMARY KEY, name VARCHAR(64), "
+				+ "amount BIGINT, price DOUBLE, active BOOLEAN, created TIMESTAMP)");
+		ps = con.prepareStatement(dao.getMultiRowInsertSql(rows));
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		ps.close();
+		con.close();
+	}
+	
+	@Benchmark
+	public int bindRows() throws SQLException {
+		int index = 1;
+		for(BenchRow row : data)
+			index = dao.bind(ps, row, index);
+		return index;
+	}
+}
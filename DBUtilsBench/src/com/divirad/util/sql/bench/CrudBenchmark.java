@@ -0,0 +1,124 @@
+package com.divirad.util.sql.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.divirad.util.sql.Database;
+
+/**
+ * Runs the Dao operations end to end against an embedded H2 database in the compatibility mode of each engine, 
+ * see <code>properties.prop</code>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class CrudBenchmark {
+
+	/**
+	 * Rows in the table while measuring
+	 */
+	private static final int TABLE_ROWS = 10_000;
+	/**
+	 * Rows written by one insertAll
+	 */
+	private static final int BATCH_ROWS = 1000;
+	
+	@Param({"mysql", "sqlserver", "h2"})
+	public String profile;
+	
+	private BenchDao dao;
+	private BenchRow key = new BenchRow();
+	private int next;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		Database.loadProfile(profile);
+		BenchRow.createTable();
+		dao = new BenchDao();
+		ArrayList<BenchRow> rows = new ArrayList<>();
+		for(int i = 0; i < TABLE_ROWS; i++) rows.add(BenchRow.of(i));
+		dao.insertAll(rows);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		Database.shutdown();
+	}
+	
+	/**
+	 * Rows written by {@link CrudBenchmark#insertAll(Batch)}
+	 */
+	@State(Scope.Thread)
+	public static class Batch {
+		
+		private ArrayList<BenchRow> rows;
+		
+		@Setup(Level.Trial)
+		public void setup() {
+			rows = new ArrayList<>();
+			for(int i = 0; i < BATCH_ROWS; i++) rows.add(BenchRow.of(TABLE_ROWS + i));
+		}
+		
+		/**
+		 * Removes the rows of the last insertAll. An insertAll takes far longer than the timer calls around each 
+		 * invocation, so they don't distort the result
+		 */
+		@Setup(Level.Invocation)
+		public void removeRows() {
+			Database.execute("DELETE FROM " + Database.getLeadingIdentifierSign() + "bench_row" 
+					+ Database.getTrailingIdentifierSign() + " WHERE id >= ?", ps -> ps.setInt(1, TABLE_ROWS));
+		}
+	}
+	
+	private int nextId() {
+		next = (next + 7919) % TABLE_ROWS;
+		return next;
+	}
+	
+	@Benchmark
+	public BenchRow select() {
+		key.id = nextId();
+		return dao.select(key);
+	}
+	
+	@Benchmark
+	public ArrayList<BenchRow> selectAll() {
+		return dao.selectAll();
+	}
+	
+	@Benchmark
+	public void update() {
+		BenchRow row = BenchRow.of(nextId());
+		row.amount++;
+		dao.update(row);
+	}
+	
+	@Benchmark
+	public void insertDelete() {
+		BenchRow row = BenchRow.of(TABLE_ROWS);
+		dao.insert(row);
+		dao.delete(row);
+	}
+	
+	@Benchmark
+	public void insertAll(Batch batch) {
+		dao.insertAll(batch.rows);
+	}
+}
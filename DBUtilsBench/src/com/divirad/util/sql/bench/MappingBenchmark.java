@@ -0,0 +1,64 @@
+package com.divirad.util.sql.bench;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.divirad.util.sql.Database;
+
+/**
+ * Maps rows of an in memory result set to objects, so only the Dao is measured and not the driver
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class MappingBenchmark {
+
+	@Param({"1000"})
+	public int rows;
+	
+	private BenchDao dao;
+	private SimpleResultSet rs;
+	
+	@Setup
+	public void setup() {
+		Database.loadProfile("mysql");
+		dao = new BenchDao();
+		rs = new SimpleResultSet();
+		rs.setAutoClose(false);
+		rs.addColumn("id", Types.INTEGER, 10, 0);
+		rs.addColumn("name", Types.VARCHAR, 64, 0);
+		rs.addColumn("amount", Types.BIGINT, 19, 0);
+		rs.addColumn("price", Types.DOUBLE, 17, 0);
+		rs.addColumn("active", Types.BOOLEAN, 1, 0);
+		rs.addColumn("created", Types.TIMESTAMP, 26, 6);
+		for(int i = 0; i < rows; i++) {
+			BenchRow row = BenchRow.of(i);
+			rs.addRow(row.id, row.name, row.amount, row.price, row.active, row.created);
+		}
+	}
+	
+	@Benchmark
+	public void mapRows(Blackhole bh) throws SQLException {
+		rs.beforeFirst();
+		while(rs.next())
+			bh.consume(dao.map(rs));
+	}
+}
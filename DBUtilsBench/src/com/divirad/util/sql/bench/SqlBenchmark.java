@@ -0,0 +1,45 @@
+package com.divirad.util.sql.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.divirad.util.sql.Database;
+
+/**
+ * Builds the SQL of multi row INSERTs as used by {@link com.divirad.util.sql.OpenDao#insertAll}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class SqlBenchmark {
+
+	@Param({"1", "100", "1000"})
+	public int rows;
+	
+	private BenchDao dao;
+	
+	@Setup
+	public void setup() {
+		Database.loadProfile("mysql");
+		dao = new BenchDao();
+	}
+	
+	@Benchmark
+	public String multiRowSql() {
+		return dao.getMultiRowInsertSql(rows);
+	}
+}
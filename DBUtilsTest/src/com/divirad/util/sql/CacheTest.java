@@ -0,0 +1,102 @@
+package com.divirad.util.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The cache of select and its invalidation by the writes of the Dao
+ */
+class CacheTest {
+
+	private String profile;
+	private TestDao<TestRow> dao;
+
+	@BeforeEach
+	void createTable() {
+		profile = TestDatabase.profile("h2");
+		TestRow.createTable(profile);
+		dao = new TestDao<>(TestRow.class, profile);
+		dao.enableCache(100, 0);
+		dao.insertAll(new ArrayList<>(Arrays.asList(TestRow.of(1), TestRow.of(2))));
+	}
+
+	/**
+	 * Changes a row without the Dao, so the cache doesn't know about it
+	 */
+	private void changeBehindTheCache(int id, String name) {
+		Database.execute(profile, "UPDATE test_row SET name=? WHERE id=?", ps -> {
+			ps.setString(1, name);
+			ps.setInt(2, id);
+		});
+	}
+
+	@Test
+	void selectReadsARowOnlyOnce() {
+		try(StatementLog log = new StatementLog()) {
+			assertEquals("row 1", dao.select(TestRow.key(1)).name);
+			assertEquals("row 1", dao.select(TestRow.key(1)).name);
+			assertEquals(1, log.get("SELECT").size());
+		}
+		assertEquals(1, dao.getCache().getHits());
+		assertEquals(1, dao.getCache().getMisses());
+	}
+
+	@Test
+	void callersGetTheirOwnCopy() {
+		dao.select(TestRow.key(1)).name = "changed";
+		assertEquals("row 1", dao.select(TestRow.key(1)).name);
+	}
+
+	@Test
+	void writesOfTheDaoInvalidateTheRow() {
+		dao.select(TestRow.key(1));
+		dao.select(TestRow.key(2));
+		changeBehindTheCache(2, "other");
+
+		TestRow row = TestRow.of(1);
+		row.name = "updated";
+		dao.update(row);
+		assertEquals("updated", dao.select(TestRow.key(1)).name);
+		// the other row is still cached
+		assertEquals("row 2", dao.select(TestRow.key(2)).name);
+
+		dao.upsert(row);
+		dao.delete(TestRow.key(1));
+		assertNull(dao.select(TestRow.key(1)));
+	}
+
+	@Test
+	void batchedWritesInvalidateTheirRows() {
+		dao.select(TestRow.key(1));
+		dao.select(TestRow.key(2));
+		ArrayList<TestRow> rows = new ArrayList<>(Arrays.asList(TestRow.of(1), TestRow.of(2)));
+		rows.get(0).name = "one";
+		rows.get(1).name = "two";
+		dao.upsertAll(rows);
+		assertEquals("one", dao.select(TestRow.key(1)).name);
+		assertEquals("two", dao.select(TestRow.key(2)).name);
+
+		dao.deleteAll(rows);
+		assertNull(dao.select(TestRow.key(1)));
+		assertEquals(0, dao.getCache().getSize());
+	}
+
+	@Test
+	void transactionsDontUseTheCache() {
+		dao.select(TestRow.key(1));
+		changeBehindTheCache(1, "committed");
+		Database.openTransaction(profile);
+		try {
+			assertEquals("committed", dao.select(TestRow.key(1)).name);
+		} finally {
+			Database.rollback(profile);
+		}
+		assertEquals("row 1", dao.select(TestRow.key(1)).name);
+	}
+}
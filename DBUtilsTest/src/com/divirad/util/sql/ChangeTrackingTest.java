@@ -0,0 +1,74 @@
+package com.divirad.util.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Partial updates of tracked rows
+ */
+class ChangeTrackingTest {
+
+	private String profile;
+	private TestDao<TestRow> dao;
+
+	@BeforeEach
+	void createTable() {
+		profile = TestDatabase.profile("h2");
+		TestRow.createTable(profile);
+		dao = new TestDao<>(TestRow.class, profile);
+		dao.enableChangeTracking();
+		dao.insert(TestRow.of(1));
+	}
+
+	@Test
+	void updateWritesOnlyTheChangedColumns() {
+		TestRow row = dao.select(TestRow.key(1));
+		row.name = "changed";
+		try(StatementLog log = new StatementLog()) {
+			dao.update(row);
+			List<StatementEvent> updates = log.get("UPDATE");
+			assertEquals(1, updates.size());
+			assertEquals("UPDATE test_row SET name=? WHERE id=?", updates.get(0).getSql());
+		}
+		TestRow stored = dao.select(TestRow.key(1));
+		assertEquals("changed", stored.name);
+		assertEquals(10, stored.amount);
+	}
+
+	@Test
+	void updateOfAnUnchangedRowExecutesNothing() {
+		TestRow row = dao.select(TestRow.key(1));
+		try(StatementLog log = new StatementLog()) {
+			dao.update(row);
+			assertTrue(log.get("UPDATE").isEmpty());
+		}
+	}
+
+	@Test
+	void theSnapshotFollowsTheUpdate() {
+		TestRow row = dao.select(TestRow.key(1));
+		row.name = "first";
+		dao.update(row);
+		row.amount = 99;
+		try(StatementLog log = new StatementLog()) {
+			dao.update(row);
+			assertEquals("UPDATE test_row SET amount=? WHERE id=?", log.get("UPDATE").get(0).getSql());
+		}
+	}
+
+	@Test
+	void rowsNotLoadedByTheDaoAreUpdatedCompletely() {
+		TestRow row = TestRow.of(1);
+		row.name = "new";
+		try(StatementLog log = new StatementLog()) {
+			dao.update(row);
+			assertEquals("UPDATE test_row SET id=?,name=?,amount=? WHERE id=?", log.get("UPDATE").get(0).getSql());
+		}
+		assertEquals("new", dao.select(TestRow.key(1)).name);
+	}
+}
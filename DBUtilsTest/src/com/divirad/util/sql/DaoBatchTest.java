@@ -0,0 +1,107 @@
+package com.divirad.util.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Chunking of insertAll, deleteAll and selectAll by keys
+ */
+class DaoBatchTest {
+
+	private static ArrayList<TestRow> rows(int from, int count) {
+		ArrayList<TestRow> rows = new ArrayList<>();
+		for(int i = from; i < from + count; i++) rows.add(TestRow.of(i));
+		return rows;
+	}
+
+	@Test
+	void insertAllWritesFullChunksAsOneBatchAndTheRestWithOneStatement() {
+		String profile = TestDatabase.profile("h2", "batch.rows", "10");
+		TestRow.createTable(profile);
+		TestDao<TestRow> dao = new TestDao<>(TestRow.class, profile);
+
+		try(StatementLog log = new StatementLog()) {
+			dao.insertAll(rows(0, 25));
+			List<StatementEvent> inserts = log.get("INSERT");
+			assertEquals(2, inserts.size());
+			assertEquals(10 * 3, StatementLog.parameters(inserts.get(0)));
+			assertEquals(20, inserts.get(0).getRows());
+			assertEquals(5 * 3, StatementLog.parameters(inserts.get(1)));
+			assertEquals(5, inserts.get(1).getRows());
+		}
+		assertEquals(25, TestDatabase.count(profile, "test_row"));
+		assertEquals("row 24", dao.select(TestRow.key(24)).name);
+	}
+
+	@Test
+	void chunksAreLimitedByTheParametersOfAStatement() {
+		String profile = TestDatabase.profile("h2", "batch.rows", "10", "batch.parameters", "7");
+		TestRow.createTable(profile);
+		assertEquals(2, Database.getBatchRows(profile, 3));
+
+		try(StatementLog log = new StatementLog()) {
+			new TestDao<>(TestRow.class, profile).insertAll(rows(0, 5));
+			List<StatementEvent> inserts = log.get("INSERT");
+			assertEquals(2, inserts.size());
+			assertEquals(2 * 3, StatementLog.parameters(inserts.get(0)));
+			assertEquals(1 * 3, StatementLog.parameters(inserts.get(1)));
+		}
+		assertEquals(5, TestDatabase.count(profile, "test_row"));
+	}
+
+	@Test
+	void singleRowBatchesAddEveryRowToOneBatch() {
+		String profile = TestDatabase.profile("h2", "batch.rows", "10", "batch.multiRow", "false");
+		TestRow.createTable(profile);
+
+		try(StatementLog log = new StatementLog()) {
+			new TestDao<>(TestRow.class, profile).insertAll(rows(0, 25));
+			List<StatementEvent> inserts = log.get("INSERT");
+			assertEquals(1, inserts.size());
+			assertEquals(3, StatementLog.parameters(inserts.get(0)));
+			assertEquals(25, inserts.get(0).getRows());
+		}
+		assertEquals(25, TestDatabase.count(profile, "test_row"));
+	}
+
+	@Test
+	void aFailedChunkWritesNoRow() {
+		String profile = TestDatabase.profile("h2", "batch.rows", "10");
+		TestRow.createTable(profile);
+		TestDao<TestRow> dao = new TestDao<>(TestRow.class, profile);
+		dao.insert(TestRow.of(22));
+
+		assertThrows(IllegalStateException.class, () -> dao.insertAll(rows(0, 25)));
+		assertEquals(1, TestDatabase.count(profile, "test_row"));
+	}
+
+	@Test
+	void deleteAllAndSelectAllUseChunkedKeyLists() {
+		String profile = TestDatabase.profile("h2", "batch.rows", "10");
+		TestRow.createTable(profile);
+		TestDao<TestRow> dao = new TestDao<>(TestRow.class, profile);
+		dao.insertAll(rows(0, 30));
+
+		ArrayList<TestRow> keys = new ArrayList<>();
+		for(int i = 0; i < 25; i++) keys.add(TestRow.key(i * 2));
+		try(StatementLog log = new StatementLog()) {
+			Map<EntityKey, TestRow> found = dao.selectAll(keys);
+			assertEquals(15, found.size());
+			assertEquals("row 4", found.get(EntityKey.of(4)).name);
+			assertEquals(3, log.get("SELECT").size());
+
+			dao.deleteAll(keys);
+			List<StatementEvent> deletes = log.get("DELETE");
+			assertEquals(2, deletes.size());
+			assertEquals(10, StatementLog.parameters(deletes.get(0)));
+			assertEquals(5, StatementLog.parameters(deletes.get(1)));
+		}
+		assertEquals(15, TestDatabase.count(profile, "test_row"));
+	}
+}
@@ -0,0 +1,134 @@
+package com.divirad.util.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.divirad.util.sql.processor.DaoProcessor;
+
+/**
+ * Compiles entity classes with the {@link DaoProcessor} and uses the generated Daos
+ */
+class DaoProcessorTest {
+
+	private static final String PERSON = "package entities;\n"
+			+ "import com.divirad.util.sql.SqlMarker;\n"
+			+ "@SqlMarker.TableView(tableName = \"person\", isWholeTable = true, isOneToNJoinable = false)\n"
+			+ "public final class Person {\n"
+			+ "    @SqlMarker.PrimaryKey public int id;\n"
+			+ "    public String name;\n"
+			+ "    public java.sql.Timestamp born;\n"
+			+ "    private Long score;\n"
+			+ "    @SqlMarker.IgnoreField public String note;\n"
+			+ "    public Long getScore() { return score; }\n"
+			+ "    public void setScore(Long score) { this.score = score; }\n"
+			+ "}\n";
+
+	@TempDir
+	Path dir;
+
+	private final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+	/**
+	 * Compiles a class with the processor to the temporary directory
+	 *
+	 * @return if the compilation succeeded
+	 */
+	private boolean compile(String className, String source) throws IOException {
+		Path file = dir.resolve(className.replace('.', '/') + ".java");
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, source);
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		try(StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, null)) {
+			JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics,
+					List.of("-d", dir.toString(), "-classpath", System.getProperty("java.class.path")),
+					null, files.getJavaFileObjects(file));
+			task.setProcessors(List.of(new DaoProcessor()));
+			return task.call();
+		}
+	}
+
+	private List<String> errors() {
+		List<String> errors = new ArrayList<>();
+		for(Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics())
+			if(d.getKind() == Diagnostic.Kind.ERROR)
+				errors.add(d.getMessage(null));
+		return errors;
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void theGeneratedDaoWritesAndReadsRows() throws Exception {
+		assertTrue(compile("entities.Person", PERSON), () -> errors().toString());
+		assertTrue(Files.exists(dir.resolve("entities/PersonGeneratedDao.java")));
+
+		String profile = TestDatabase.profile("h2");
+		TestDatabase.execute(profile, "CREATE TABLE person (id INT PRIMARY KEY, name VARCHAR(64), born TIMESTAMP, score BIGINT)");
+		try(URLClassLoader loader = new URLClassLoader(new URL[] { dir.toUri().toURL() }, getClass().getClassLoader())) {
+			Class<Object> person = (Class<Object>) loader.loadClass("entities.Person");
+			OpenDao<Object> dao = (OpenDao<Object>) loader.loadClass("entities.PersonGeneratedDao")
+					.getConstructor(String.class).newInstance(profile);
+			// the same statements as the Dao created from the class with reflection
+			TestDao<Object> reflective = new TestDao<>(person, profile);
+			assertEquals(reflective.sql_insert, dao.sql_insert);
+			assertEquals(reflective.sql_select, dao.sql_select);
+			assertEquals(reflective.sql_update, dao.sql_update);
+
+			Object row = person.getConstructor().newInstance();
+			person.getField("id").set(row, 7);
+			person.getField("name").set(row, "Ada");
+			person.getMethod("setScore", Long.class).invoke(row, 42L);
+			person.getField("note").set(row, "not a column");
+			dao.insert(row);
+
+			Object key = person.getConstructor().newInstance();
+			person.getField("id").set(key, 7);
+			Object stored = dao.select(key);
+			assertEquals("Ada", person.getField("name").get(stored));
+			assertEquals(42L, person.getMethod("getScore").invoke(stored));
+			assertEquals(null, person.getField("born").get(stored));
+			assertEquals(null, person.getField("note").get(stored));
+			assertEquals("Ada", person.getField("name").get(reflective.select(key)));
+		}
+	}
+
+	@Test
+	void privateFieldsNeedAGetterAndSetter() throws IOException {
+		assertFalse(compile("entities.Hidden", "package entities;\n"
+				+ "import com.divirad.util.sql.SqlMarker;\n"
+				+ "@SqlMarker.TableView(tableName = \"hidden\", isWholeTable = true, isOneToNJoinable = false)\n"
+				+ "public final class Hidden {\n"
+				+ "    @SqlMarker.PrimaryKey private int id;\n"
+				+ "}\n"));
+		assertEquals(List.of("Can't access field: id is private and has no getter and setter"), errors());
+	}
+
+	@Test
+	void entitiesMustBeFinal() throws IOException {
+		assertFalse(compile("entities.Open", "package entities;\n"
+				+ "import com.divirad.util.sql.SqlMarker;\n"
+				+ "@SqlMarker.TableView(tableName = \"open\", isWholeTable = true, isOneToNJoinable = false)\n"
+				+ "public class Open {\n"
+				+ "    @SqlMarker.PrimaryKey public int id;\n"
+				+ "}\n"));
+		assertEquals(List.of("Can't use class: must be final"), errors());
+	}
+}
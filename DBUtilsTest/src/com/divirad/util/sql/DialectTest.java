@@ -0,0 +1,98 @@
+package com.divirad.util.sql;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The SQL generated by each dialect
+ */
+class DialectTest {
+
+	private static final String[] COLUMNS = { "id", "name", "amount" };
+	private static final String[] KEY = { "id" };
+	private static final String[] KEYS = { "a", "b" };
+	private static final String INSERT = "INSERT INTO t (a,b) VALUES (?,?),(?,?)";
+
+	@Test
+	void mysql() {
+		Dialect d = EngineSpecifics.getDialect("mysql");
+		assertEquals("INSERT INTO t (id,name,amount) VALUES (?,?,?),(?,?,?) "
+				+ "ON DUPLICATE KEY UPDATE name=VALUES(name),amount=VALUES(amount)", d.getUpsertStatement("t", COLUMNS, KEY, 2));
+		assertEquals("id IN (?,?,?)", d.getKeyListPredicate(KEY, 3));
+		assertEquals("(a,b) IN ((?,?),(?,?))", d.getKeyListPredicate(KEYS, 2));
+		assertEquals("(a,b)>(?,?)", d.getKeysetPredicate(KEYS));
+		assertArrayEquals(new int[] { 0, 1 }, d.getKeysetParameters(2));
+		assertEquals(" LIMIT 10", d.getLimitClause(10));
+		assertNull(d.getGeneratedKeysStatement(INSERT, KEY));
+		assertEquals("`", d.getLeadingIdentifierSign());
+	}
+
+	@Test
+	void postgresql() {
+		Dialect d = EngineSpecifics.getDialect("postgresql");
+		assertEquals("INSERT INTO t (id,name,amount) VALUES (?,?,?),(?,?,?) "
+				+ "ON CONFLICT (id) DO UPDATE SET name=EXCLUDED.name,amount=EXCLUDED.amount",
+				d.getUpsertStatement("t", COLUMNS, KEY, 2));
+		assertEquals("(a,b) IN ((?,?),(?,?))", d.getKeyListPredicate(KEYS, 2));
+		assertEquals("(a,b)>(?,?)", d.getKeysetPredicate(KEYS));
+		assertEquals(" LIMIT 10", d.getLimitClause(10));
+		// batches return their keys with getGeneratedKeys, RETURNING would execute every row on its own
+		assertNull(d.getGeneratedKeysStatement(INSERT, KEY));
+		assertEquals(true, d.isStreamingInTransaction());
+	}
+
+	@Test
+	void sqlServer() {
+		Dialect d = EngineSpecifics.getDialect("sqlserver");
+		assertEquals("MERGE INTO t WITH (HOLDLOCK) AS target USING (VALUES (?,?,?),(?,?,?)) AS source (id,name,amount) "
+				+ "ON target.id=source.id WHEN MATCHED THEN UPDATE SET target.name=source.name,target.amount=source.amount "
+				+ "WHEN NOT MATCHED THEN INSERT (id,name,amount) VALUES (source.id,source.name,source.amount);",
+				d.getUpsertStatement("t", COLUMNS, KEY, 2));
+		assertEquals("id IN (?,?,?)", d.getKeyListPredicate(KEY, 3));
+		assertEquals("((a=? AND b=?) OR (a=? AND b=?))", d.getKeyListPredicate(KEYS, 2));
+		assertEquals("(a>? OR a=? AND b>?)", d.getKeysetPredicate(KEYS));
+		assertArrayEquals(new int[] { 0, 0, 1 }, d.getKeysetParameters(2));
+		assertEquals(" OFFSET 0 ROWS FETCH NEXT 10 ROWS ONLY", d.getLimitClause(10));
+		assertEquals("MERGE INTO t USING (VALUES (?,?,0),(?,?,1)) AS source (a,b," + Dialect.GENERATED_ROW + ") ON 1=0 "
+				+ "WHEN NOT MATCHED THEN INSERT (a,b) VALUES (source.a,source.b) "
+				+ "OUTPUT source." + Dialect.GENERATED_ROW + ",INSERTED.id;", d.getGeneratedKeysStatement(INSERT, KEY));
+		assertEquals(false, d.isStreamingInTransaction());
+	}
+
+	@Test
+	void h2() {
+		Dialect d = EngineSpecifics.getDialect("h2");
+		assertEquals("MERGE INTO t (id,name,amount) KEY (id) VALUES (?,?,?),(?,?,?)",
+				d.getUpsertStatement("t", COLUMNS, KEY, 2));
+		assertEquals("(a,b) IN ((?,?),(?,?))", d.getKeyListPredicate(KEYS, 2));
+		assertEquals("(a,b)>(?,?)", d.getKeysetPredicate(KEYS));
+		assertEquals(" LIMIT 10", d.getLimitClause(10));
+		assertNull(d.getGeneratedKeysStatement(INSERT, KEY));
+	}
+
+	@Test
+	void sqlite() {
+		Dialect d = EngineSpecifics.getDialect("sqlite");
+		assertEquals("INSERT INTO t (id,name,amount) VALUES (?,?,?),(?,?,?) "
+				+ "ON CONFLICT (id) DO UPDATE SET name=excluded.name,amount=excluded.amount",
+				d.getUpsertStatement("t", COLUMNS, KEY, 2));
+		assertEquals("((a=? AND b=?) OR (a=? AND b=?))", d.getKeyListPredicate(KEYS, 2));
+		assertEquals(" LIMIT 10", d.getLimitClause(10));
+		assertEquals(INSERT + " RETURNING id", d.getGeneratedKeysStatement(INSERT, KEY));
+		assertEquals("\"", d.getLeadingIdentifierSign());
+	}
+
+	@Test
+	void batchRowsAreLimitedByTheParametersOfTheEngine() {
+		Properties profile = new Properties();
+		profile.setProperty("engine", "sqlserver");
+		Database.configure("dialect_sqlserver", profile);
+		assertEquals(2000 / 7, Database.getBatchRows("dialect_sqlserver", 7));
+		assertEquals(1000, Database.getBatchRows("dialect_sqlserver", 1));
+	}
+}
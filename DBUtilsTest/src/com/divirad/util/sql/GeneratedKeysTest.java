@@ -0,0 +1,91 @@
+package com.divirad.util.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Generated keys written back into the automatic values after inserts
+ */
+class GeneratedKeysTest {
+
+	private static TestDao<TestItem> dao(String engine, String... properties) {
+		String profile = TestDatabase.profile(engine, properties);
+		TestItem.createTable(profile);
+		return new TestDao<>(TestItem.class, profile);
+	}
+
+	private static void assertKeys(TestDao<TestItem> dao, ArrayList<TestItem> items) {
+		for(int i = 0; i < items.size(); i++) {
+			TestItem item = items.get(i);
+			assertEquals(i + 1, item.id);
+			assertEquals(item.name, dao.select(item).name);
+		}
+	}
+
+	private static ArrayList<TestItem> items(int count) {
+		ArrayList<TestItem> items = new ArrayList<>();
+		for(int i = 0; i < count; i++) items.add(TestItem.of("item " + i));
+		return items;
+	}
+
+	/**
+	 * Returns the generated keys in reverse order with the index of their row, like the statement of SQL Server
+	 */
+	private static final class UnorderedKeysDialect extends H2Dialect {
+		
+		@Override
+		public String getEngine() {
+			return "h2_unordered_keys";
+		}
+		
+		@Override
+		public String getGeneratedKeysStatement(String insertSql, String[] columns) {
+			return "SELECT " + String.join(",", columns) + ",ROW_NUMBER() OVER (ORDER BY id)-1 AS " + Dialect.GENERATED_ROW 
+					+ " FROM FINAL TABLE (" + insertSql + ") ORDER BY id DESC";
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "h2", "mysql" })
+	void insertSetsTheGeneratedKey(String engine) {
+		TestDao<TestItem> dao = dao(engine);
+		TestItem first = TestItem.of("first");
+		TestItem second = TestItem.of("second");
+		dao.insert(first);
+		dao.insert(second);
+		assertEquals(1, first.id);
+		assertEquals(2, second.id);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "h2", "mysql" })
+	void insertAllSetsTheKeysOfAllChunks(String engine) {
+		TestDao<TestItem> dao = dao(engine, "batch.rows", "10");
+		ArrayList<TestItem> items = items(25);
+		dao.insertAll(items);
+		assertKeys(dao, items);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "h2", "mysql" })
+	void insertAllSetsTheKeysOfSingleRowBatches(String engine) {
+		TestDao<TestItem> dao = dao(engine, "batch.rows", "10", "batch.multiRow", "false");
+		ArrayList<TestItem> items = items(25);
+		dao.insertAll(items);
+		assertKeys(dao, items);
+	}
+
+	@Test
+	void keysAreAssignedByTheirRowIndex() {
+		EngineSpecifics.registerDialect(new UnorderedKeysDialect());
+		TestDao<TestItem> dao = dao("h2_unordered_keys", "batch.rows", "10");
+		ArrayList<TestItem> items = items(25);
+		dao.insertAll(items);
+		assertKeys(dao, items);
+	}
+}
@@ -0,0 +1,69 @@
+package com.divirad.util.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Join fields with a foreign key loaded for many parents at once
+ */
+class JoinTest {
+
+	@SqlMarker.TableView(tableName = "test_parent", isWholeTable = true, isOneToNJoinable = true)
+	public static final class Parent {
+		@SqlMarker.PrimaryKey
+		public int id;
+		public String name;
+		@SqlMarker.JoinField(foreignKey = "parentId")
+		public ArrayList<Child> children;
+		
+		public Parent() {}
+	}
+
+	@SqlMarker.TableView(tableName = "test_child", isWholeTable = true, isOneToNJoinable = false)
+	public static final class Child {
+		@SqlMarker.PrimaryKey
+		public int id;
+		public int parentId;
+		
+		public Child() {}
+	}
+
+	@Test
+	void childrenAreSelectedInChunksOfParents() {
+		String profile = TestDatabase.profile("h2", "batch.rows", "10");
+		TestDatabase.execute(profile, "CREATE TABLE test_parent (id INT PRIMARY KEY, name VARCHAR(64))");
+		TestDatabase.execute(profile, "CREATE TABLE test_child (id INT PRIMARY KEY, parentId INT)");
+		ArrayList<Parent> parents = new ArrayList<>();
+		ArrayList<Child> children = new ArrayList<>();
+		for(int i = 0; i < 25; i++) {
+			Parent parent = new Parent();
+			parent.id = i;
+			parent.name = "parent " + i;
+			parents.add(parent);
+			for(int c = 0; c < i % 3; c++) {
+				Child child = new Child();
+				child.id = i * 10 + c;
+				child.parentId = i;
+				children.add(child);
+			}
+		}
+		TestDao<Parent> dao = new TestDao<>(Parent.class, profile);
+		dao.insertAll(parents);
+		new TestDao<>(Child.class, profile).insertAll(children);
+
+		try(StatementLog log = new StatementLog()) {
+			List<Parent> loaded = dao.selectAll();
+			assertEquals(25, loaded.size());
+			for(Parent parent : loaded)
+				assertEquals(parent.id % 3, parent.children.size());
+			// one query of the parents and one of the children per 10 parents
+			assertEquals(1 + 3, log.get("SELECT").size());
+
+			assertEquals(2, dao.select(parents.get(5)).children.size());
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.divirad.util.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Keyset pagination with the predicate and limit clause of each dialect
+ */
+class PagingTest {
+
+	/**
+	 * Creates a table with the pairs (a, b) for a and b from 0 to 3, inserted in reverse order
+	 */
+	private static TestDao<TestPair> dao(String engine) {
+		String profile = TestDatabase.profile(engine);
+		TestPair.createTable(profile);
+		TestDao<TestPair> dao = new TestDao<>(TestPair.class, profile);
+		ArrayList<TestPair> pairs = new ArrayList<>();
+		for(int a = 3; a >= 0; a--)
+			for(int b = 3; b >= 0; b--)
+				pairs.add(TestPair.of(a, b));
+		dao.insertAll(pairs);
+		return dao;
+	}
+
+	private static List<String> names(List<TestPair> page) {
+		List<String> names = new ArrayList<>();
+		for(TestPair pair : page) names.add(pair.name);
+		return names;
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "h2", "mysql", "sqlserver" })
+	void selectPageReturnsTheRowsAfterTheKey(String engine) {
+		TestDao<TestPair> dao = dao(engine);
+		assertEquals(List.of("0/0", "0/1", "0/2"), names(dao.selectPage(null, 3)));
+		assertEquals(List.of("1/3", "2/0", "2/1"), names(dao.selectPage(TestPair.of(1, 2), 3)));
+		assertEquals(List.of("3/3"), names(dao.selectPage(TestPair.of(3, 2), 3)));
+		assertTrue(dao.selectPage(TestPair.of(3, 3), 3).isEmpty());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "h2", "mysql", "sqlserver" })
+	void pagesIterateOverAllRowsInKeyOrder(String engine) {
+		TestDao<TestPair> dao = dao(engine);
+		PageIterator<TestPair> pages = dao.pages(5);
+		List<Integer> sizes = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		while(pages.hasNext()) {
+			ArrayList<TestPair> page = pages.next();
+			sizes.add(page.size());
+			names.addAll(names(page));
+		}
+		assertEquals(List.of(5, 5, 5, 1), sizes);
+		assertEquals("0/0", names.get(0));
+		assertEquals("1/1", names.get(5));
+		assertEquals("3/3", names.get(15));
+		assertFalse(pages.hasNext());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "h2", "sqlserver" })
+	void aFullLastPageEndsWithOneEmptyQuery(String engine) {
+		TestDao<TestPair> dao = dao(engine);
+		try(StatementLog log = new StatementLog()) {
+			PageIterator<TestPair> pages = dao.pages(8);
+			int count = 0;
+			while(pages.hasNext()) count += pages.next().size();
+			assertEquals(16, count);
+			assertEquals(3, log.get("SELECT").size());
+		}
+	}
+}
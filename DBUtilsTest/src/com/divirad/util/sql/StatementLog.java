@@ -0,0 +1,45 @@
+package com.divirad.util.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records the statements executed while it is open
+ */
+final class StatementLog implements StatementListener, AutoCloseable {
+	
+	private final List<StatementEvent> events = new CopyOnWriteArrayList<>();
+	
+	StatementLog() {
+		Database.addStatementListener(this);
+	}
+	
+	@Override
+	public void statementExecuted(StatementEvent event) {
+		events.add(event);
+	}
+	
+	/**
+	 * Returns the recorded statements starting with a keyword, e.g. <code>INSERT</code>
+	 */
+	List<StatementEvent> get(String keyword) {
+		List<StatementEvent> result = new ArrayList<>();
+		for(StatementEvent e : events)
+			if(e.getSql().startsWith(keyword))
+				result.add(e);
+		return result;
+	}
+	
+	/**
+	 * Returns the number of parameters of a recorded statement
+	 */
+	static int parameters(StatementEvent event) {
+		return (int) event.getSql().chars().filter(c -> c == '?').count();
+	}
+	
+	@Override
+	public void close() {
+		Database.removeStatementListener(this);
+	}
+}
@@ -0,0 +1,19 @@
+package com.divirad.util.sql;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+
+/**
+ * Dao of the test classes, which have no join fields without a foreign key
+ */
+class TestDao<T> extends OpenDao<T> {
+	
+	TestDao(Class<T> cls, String profileName) {
+		super(cls, profileName);
+	}
+	
+	@Override
+	protected <J> ArrayList<J> getJoinObjects(Field f, T result, Field[] primaryKeys) {
+		throw new UnsupportedOperationException(f.getName() + " has no foreignKey");
+	}
+}
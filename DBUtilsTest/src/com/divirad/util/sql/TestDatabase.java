@@ -0,0 +1,61 @@
+package com.divirad.util.sql;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the profiles of the tests. Every profile uses an in-memory H2 database of its own, 
+ * in the compatibility mode of the engine of the profile
+ */
+final class TestDatabase {
+	
+	private static final AtomicInteger databases = new AtomicInteger();
+	
+	private TestDatabase() {}
+	
+	/**
+	 * Configures a profile on a new database
+	 * 
+	 * @param engine the engine of the dialect, <code>h2</code>, <code>mysql</code>, <code>sqlserver</code> 
+	 *               or <code>postgresql</code>
+	 * @param properties further properties of the profile as pairs of key and value, e.g. "batch.rows", "10"
+	 * @return the name of the profile
+	 */
+	static String profile(String engine, String... properties) {
+		String name = engine + databases.incrementAndGet();
+		Properties profile = new Properties();
+		profile.setProperty("engine", engine);
+		profile.setProperty("url", "jdbc:h2:mem:" + name + mode(engine) + ";DB_CLOSE_DELAY=-1");
+		for(int i = 0; i < properties.length; i += 2)
+			profile.setProperty(properties[i], properties[i + 1]);
+		Database.configure(name, profile);
+		return name;
+	}
+	
+	private static String mode(String engine) {
+		switch(engine) {
+		case "mysql": return ";MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+		case "sqlserver": return ";MODE=MSSQLServer";
+		case "postgresql": return ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+		default: return "";
+		}
+	}
+	
+	/**
+	 * Executes a statement without parameters, e.g. <code>CREATE TABLE</code>
+	 */
+	static void execute(String profileName, String sql) {
+		if(Database.execute(profileName, sql, ps -> {}) < 0)
+			throw new IllegalStateException("Can't execute " + sql);
+	}
+	
+	/**
+	 * Returns the number of rows of a table
+	 */
+	static int count(String profileName, String table) {
+		return Database.query(profileName, "SELECT COUNT(*) FROM " + table, ps -> {}, rs -> {
+			rs.next();
+			return rs.getInt(1);
+		});
+	}
+}
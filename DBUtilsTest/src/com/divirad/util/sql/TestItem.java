@@ -0,0 +1,25 @@
+package com.divirad.util.sql;
+
+/**
+ * Row with a primary key generated by the database
+ */
+@SqlMarker.TableView(tableName = "test_item", isWholeTable = true, isOneToNJoinable = false)
+public final class TestItem {
+	
+	@SqlMarker.PrimaryKey
+	@SqlMarker.AutomaticValue
+	public int id;
+	public String name;
+	
+	public TestItem() {}
+	
+	public static TestItem of(String name) {
+		TestItem item = new TestItem();
+		item.name = name;
+		return item;
+	}
+	
+	static void createTable(String profileName) {
+		TestDatabase.execute(profileName, "CREATE TABLE test_item (id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(64))");
+	}
+}
@@ -0,0 +1,28 @@
+package com.divirad.util.sql;
+
+/**
+ * Row with a primary key of two columns
+ */
+@SqlMarker.TableView(tableName = "test_pair", isWholeTable = true, isOneToNJoinable = false)
+public final class TestPair {
+	
+	@SqlMarker.PrimaryKey
+	public int a;
+	@SqlMarker.PrimaryKey
+	public int b;
+	public String name;
+	
+	public TestPair() {}
+	
+	public static TestPair of(int a, int b) {
+		TestPair pair = new TestPair();
+		pair.a = a;
+		pair.b = b;
+		pair.name = a + "/" + b;
+		return pair;
+	}
+	
+	static void createTable(String profileName) {
+		TestDatabase.execute(profileName, "CREATE TABLE test_pair (a INT, b INT, name VARCHAR(64), PRIMARY KEY (a, b))");
+	}
+}
@@ -0,0 +1,33 @@
+package com.divirad.util.sql;
+
+/**
+ * Row with a primary key given by the application
+ */
+@SqlMarker.TableView(tableName = "test_row", isWholeTable = true, isOneToNJoinable = false)
+public final class TestRow {
+	
+	@SqlMarker.PrimaryKey
+	public int id;
+	public String name;
+	public long amount;
+	
+	public TestRow() {}
+	
+	public static TestRow of(int id) {
+		TestRow row = new TestRow();
+		row.id = id;
+		row.name = "row " + id;
+		row.amount = id * 10L;
+		return row;
+	}
+	
+	public static TestRow key(int id) {
+		TestRow row = new TestRow();
+		row.id = id;
+		return row;
+	}
+	
+	static void createTable(String profileName) {
+		TestDatabase.execute(profileName, "CREATE TABLE test_row (id INT PRIMARY KEY, name VARCHAR(64), amount BIGINT)");
+	}
+}
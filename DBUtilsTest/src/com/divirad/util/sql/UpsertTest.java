@@ -0,0 +1,71 @@
+package com.divirad.util.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Upserts with the statement of each dialect. H2 can't run the statements of PostgreSQL and SQL Server, 
+ * they are only checked by {@link DialectTest}
+ */
+class UpsertTest {
+
+	private static TestDao<TestRow> dao(String engine, String... properties) {
+		String profile = TestDatabase.profile(engine, properties);
+		TestRow.createTable(profile);
+		return new TestDao<>(TestRow.class, profile);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "h2", "mysql" })
+	void upsertInsertsAndUpdates(String engine) {
+		TestDao<TestRow> dao = dao(engine);
+		TestRow row = TestRow.of(1);
+		dao.upsert(row);
+		assertEquals("row 1", dao.select(TestRow.key(1)).name);
+
+		row.name = "updated";
+		dao.upsert(row);
+		assertEquals("updated", dao.select(TestRow.key(1)).name);
+		assertEquals(1, dao.selectAll().size());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "h2", "mysql" })
+	void upsertAllWritesNewAndExistingRowsInChunks(String engine) {
+		TestDao<TestRow> dao = dao(engine, "batch.rows", "10");
+		ArrayList<TestRow> existing = new ArrayList<>();
+		for(int i = 0; i < 30; i += 2) existing.add(TestRow.of(i));
+		dao.insertAll(existing);
+
+		ArrayList<TestRow> rows = new ArrayList<>();
+		for(int i = 0; i < 25; i++) {
+			TestRow row = TestRow.of(i);
+			row.name = "upserted " + i;
+			rows.add(row);
+		}
+		try(StatementLog log = new StatementLog()) {
+			dao.upsertAll(rows);
+			// one batch of the full chunks and one statement of the rest
+			assertEquals(2, log.get("").size());
+		}
+		ArrayList<TestRow> all = dao.selectAll();
+		assertEquals(25 + 2, all.size());
+		assertEquals("upserted 4", dao.select(TestRow.key(4)).name);
+		assertEquals("upserted 5", dao.select(TestRow.key(5)).name);
+		assertEquals("row 26", dao.select(TestRow.key(26)).name);
+	}
+
+	@Test
+	void upsertNeedsKeysGivenByTheRow() {
+		String profile = TestDatabase.profile("h2");
+		TestItem.createTable(profile);
+		TestDao<TestItem> dao = new TestDao<>(TestItem.class, profile);
+		assertThrows(UnsupportedOperationException.class, () -> dao.upsert(TestItem.of("item")));
+	}
+}
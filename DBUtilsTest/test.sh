@@ -0,0 +1,37 @@
+#!/bin/sh
+# Builds and runs the tests without Eclipse (JDK 11 or newer).
+#
+#   ./test.sh fetch              downloads the dependencies to ./lib
+#   ./test.sh [launcher options] compiles DBUtils and the tests to ./out and runs all tests or the selected ones,
+#                                e.g. ./test.sh --select-class com.divirad.util.sql.DialectTest
+set -e
+cd "$(dirname "$0")"
+
+LIB=lib
+OUT=out
+MAVEN=https://repo1.maven.org/maven2
+JARS="org/junit/platform/junit-platform-console-standalone/1.10.2/junit-platform-console-standalone-1.10.2.jar
+com/h2database/h2/2.2.224/h2-2.2.224.jar
+org/apache/commons/commons-dbcp2/2.12.0/commons-dbcp2-2.12.0.jar
+org/apache/commons/commons-pool2/2.12.0/commons-pool2-2.12.0.jar
+commons-logging/commons-logging/1.3.0/commons-logging-1.3.0.jar
+org/slf4j/slf4j-api/2.0.13/slf4j-api-2.0.13.jar
+org/slf4j/slf4j-simple/2.0.13/slf4j-simple-2.0.13.jar"
+
+if [ "$1" = "fetch" ]; then
+	mkdir -p $LIB
+	for jar in $JARS; do
+		[ -f "$LIB/$(basename $jar)" ] || curl -sSfL -o "$LIB/$(basename $jar)" "$MAVEN/$jar"
+	done
+	exit 0
+fi
+
+rm -rf $OUT
+mkdir -p $OUT/dbutils $OUT/test
+javac -nowarn --release 11 -proc:none -d $OUT/dbutils -cp "$LIB/*" \
+	$(find ../DBUtils/src -name '*.java' ! -name module-info.java)
+javac -nowarn --release 11 -proc:none -d $OUT/test -cp "$OUT/dbutils:$LIB/*" $(find src -name '*.java')
+[ $# -gt 0 ] || set -- --scan-class-path "$OUT/test"
+# DBUtils is on the class path of the JVM, the test of the annotation processor compiles against it
+exec java -cp "$OUT/test:$OUT/dbutils:$LIB/*" org.junit.platform.console.ConsoleLauncher execute \
+	--disable-banner --fail-if-no-tests "$@"